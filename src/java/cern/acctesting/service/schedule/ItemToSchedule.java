@@ -125,6 +125,40 @@ public class ItemToSchedule implements Comparable<ItemToSchedule> {
         return new ArrayList<ItemToSchedule>(requiredItems);
     }
 
+    /**
+     * Compares the definition of this item with the one of the given item. Two items with the same definition are
+     * treated the same by all constraints, even if they are different objects. The scheduler relies on this to reuse
+     * the constraint checks of a previous scheduling run.
+     * <p>
+     * This class only knows its own data, so instances of subclasses only have the same definition if they are the
+     * same object. A subclass that carries additional data has to override this method and compare that data, too, if
+     * its items should be reused (see {@link #hasSameBaseDefinition(ItemToSchedule)}).
+     * 
+     * @param other
+     *            the item to compare with
+     * @return {@code true} if both items have the same id, the same durations and the same required items
+     */
+    public boolean hasSameDefinition(ItemToSchedule other) {
+        if (this == other) {
+            return true;
+        }
+        if (getClass() != ItemToSchedule.class || other == null || other.getClass() != ItemToSchedule.class) {
+            return false;
+        }
+        return hasSameBaseDefinition(other);
+    }
+
+    /**
+     * @param other
+     *            the item to compare with
+     * @return {@code true} if both items have the same id, the same durations and the same required items, no matter
+     *         what their class is
+     */
+    protected boolean hasSameBaseDefinition(ItemToSchedule other) {
+        return other != null && id == other.id && durations.equals(other.durations)
+                && requiredItems.equals(other.requiredItems);
+    }
+
     @Override
     public int hashCode() {
         return id;
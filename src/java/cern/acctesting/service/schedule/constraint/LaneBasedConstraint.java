@@ -0,0 +1,31 @@
+// @formatter:off
+ /*******************************************************************************
+ *
+ * This file is part of JScheduleX.
+ * 
+ * Copyright (c) 2012 CERN.
+ *
+ * This software is distributed under the terms of the GNU Lesser General
+ * Public Licence version 3 (LGPL Version 3), copied verbatim in the file COPYING
+ * 
+ * In applying this licence, CERN does not waive the privileges and immunities
+ * granted to it by virtue of its status as an Intergovernmental Organization
+ * or submit itself to any jurisdiction.
+ * 
+ ******************************************************************************/
+// @formatter:on
+
+
+package cern.acctesting.service.schedule.constraint;
+
+/**
+ * Pair constraints implementing this interface declare that the result of {@link ItemPairConstraint#needsChecking} only depends on the
+ * affected lanes of the two items. The scheduler uses this property to group the items by their lanes and to ask the constraint only once
+ * for every pair of groups instead of once for every pair of items.
+ * 
+ * @author Michael Galetzka
+ * 
+ */
+public interface LaneBasedConstraint {
+
+}
@@ -0,0 +1,30 @@
+// @formatter:off
+ /*******************************************************************************
+ *
+ * This file is part of JScheduleX.
+ * 
+ * Copyright (c) 2012 CERN.
+ *
+ * This software is distributed under the terms of the GNU Lesser General
+ * Public Licence version 3 (LGPL Version 3), copied verbatim in the file COPYING
+ * 
+ * In applying this licence, CERN does not waive the privileges and immunities
+ * granted to it by virtue of its status as an Intergovernmental Organization
+ * or submit itself to any jurisdiction.
+ * 
+ ******************************************************************************/
+// @formatter:on
+
+package cern.acctesting.service.schedule.constraint;
+
+/**
+ * Pair constraints implementing this interface declare that the order of the two items does not matter for their decision, so checking
+ * item A against item B returns the same decision as checking item B against item A. The scheduler uses this property to check every pair
+ * of such constraints only once and to credit the result to both items.
+ * 
+ * @author Michael Galetzka
+ * 
+ */
+public interface SymmetricConstraint {
+
+}
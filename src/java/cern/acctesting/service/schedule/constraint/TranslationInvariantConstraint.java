@@ -0,0 +1,34 @@
+// @formatter:off
+ /*******************************************************************************
+ *
+ * This file is part of JScheduleX.
+ * 
+ * Copyright (c) 2012 CERN.
+ *
+ * This software is distributed under the terms of the GNU Lesser General
+ * Public Licence version 3 (LGPL Version 3), copied verbatim in the file COPYING
+ * 
+ * In applying this licence, CERN does not waive the privileges and immunities
+ * granted to it by virtue of its status as an Intergovernmental Organization
+ * or submit itself to any jurisdiction.
+ * 
+ ******************************************************************************/
+// @formatter:on
+
+package cern.acctesting.service.schedule.constraint;
+
+/**
+ * Pair constraints implementing this interface declare that their decision only depends on the two items and the distance between their
+ * start values, but not on the absolute position of the items in the plan. So, if both items are moved by the same amount of time, the
+ * decision must stay the same. The scheduler uses this property to remember the decisions of such a constraint and to reuse them instead
+ * of checking the same pair at the same distance over and over again.
+ * <p>
+ * Constraints whose decision changes during a scheduling run (e.g. because it depends on the current time) must not implement this
+ * interface.
+ * 
+ * @author Michael Galetzka
+ * 
+ */
+public interface TranslationInvariantConstraint {
+
+}
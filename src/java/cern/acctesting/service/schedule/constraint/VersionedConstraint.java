@@ -0,0 +1,49 @@
+// @formatter:off
+ /*******************************************************************************
+ *
+ * This file is part of JScheduleX.
+ * 
+ * Copyright (c) 2012 CERN.
+ *
+ * This software is distributed under the terms of the GNU Lesser General
+ * Public Licence version 3 (LGPL Version 3), copied verbatim in the file COPYING
+ * 
+ * In applying this licence, CERN does not waive the privileges and immunities
+ * granted to it by virtue of its status as an Intergovernmental Organization
+ * or submit itself to any jurisdiction.
+ * 
+ ******************************************************************************/
+// @formatter:on
+
+
+package cern.acctesting.service.schedule.constraint;
+
+/**
+ * An {@link UpdateableConstraint} that tells the scheduler if an update changed its decisions. If the versions of all updateable
+ * constraints are the same as in the previous scheduling run, the scheduler keeps the data it derived from the constraints (e.g. cached
+ * decisions and statistics) instead of rebuilding it. Updateable constraints that do not implement this interface are always treated as
+ * changed.
+ * <p>
+ * An update only prepares the new data of the constraint, the constraint keeps making its decisions with the data it used before. At the
+ * start of every scheduling run the scheduler calls {@link #switchToLatestData()}, so the constraint uses the data of its latest completed
+ * update for the whole run. If the updates are run in the background (see
+ * {@link cern.acctesting.service.schedule.impl.ViolationsManager#setUpdatingInBackground}) an update may complete while a scheduling run
+ * uses the constraint, so the prepared data has to be handed over in a thread safe way, for example through a volatile field.
+ * 
+ * @author Michael Galetzka
+ * 
+ */
+public interface VersionedConstraint extends UpdateableConstraint {
+
+    /**
+     * @return the version of the data the constraint currently uses to make its decisions. The version has to change with every update
+     *         that changes a decision of the constraint.
+     */
+    long getVersion();
+
+    /**
+     * Makes the constraint use the data of its latest completed update. The scheduler calls this method at the start of every scheduling
+     * run, before it reads the version. The decisions of the constraint must not change until the method is called again.
+     */
+    void switchToLatestData();
+}
@@ -24,9 +24,11 @@ import cern.acctesting.service.schedule.ScheduledItem;
 import cern.acctesting.service.schedule.constraint.ConstraintDecision;
 import cern.acctesting.service.schedule.constraint.ConstraintPrediction;
 import cern.acctesting.service.schedule.constraint.ItemPairConstraint;
+import cern.acctesting.service.schedule.constraint.SymmetricConstraint;
+import cern.acctesting.service.schedule.constraint.TranslationInvariantConstraint;
 import cern.acctesting.service.schedule.constraint.ConstraintPrediction.Prediction;
 
-public class DebugTestConstraint implements ItemPairConstraint {
+public class DebugTestConstraint implements ItemPairConstraint, TranslationInvariantConstraint, SymmetricConstraint {
 
     @Override
     public ConstraintDecision check(ScheduledItem item1, ScheduledItem item2) {
@@ -26,9 +26,13 @@ import cern.acctesting.service.schedule.ScheduledItem;
 import cern.acctesting.service.schedule.constraint.ConstraintDecision;
 import cern.acctesting.service.schedule.constraint.ConstraintPrediction;
 import cern.acctesting.service.schedule.constraint.ItemPairConstraint;
+import cern.acctesting.service.schedule.constraint.LaneBasedConstraint;
+import cern.acctesting.service.schedule.constraint.SymmetricConstraint;
+import cern.acctesting.service.schedule.constraint.TranslationInvariantConstraint;
 import cern.acctesting.service.schedule.constraint.ConstraintPrediction.Prediction;
 
-public class NoOverlappingConstraint implements ItemPairConstraint {
+public class NoOverlappingConstraint implements ItemPairConstraint, TranslationInvariantConstraint, SymmetricConstraint,
+        LaneBasedConstraint {
 
     @Override
     public ConstraintDecision check(ScheduledItem item1, ScheduledItem item2) {
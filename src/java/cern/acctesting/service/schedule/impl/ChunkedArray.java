@@ -0,0 +1,195 @@
+// @formatter:off
+ /*******************************************************************************
+ *
+ * This file is part of JScheduleX.
+ * 
+ * Copyright (c) 2012 CERN.
+ *
+ * This software is distributed under the terms of the GNU Lesser General
+ * Public Licence version 3 (LGPL Version 3), copied verbatim in the file COPYING
+ * 
+ * In applying this licence, CERN does not waive the privileges and immunities
+ * granted to it by virtue of its status as an Intergovernmental Organization
+ * or submit itself to any jurisdiction.
+ * 
+ ******************************************************************************/
+// @formatter:on
+
+
+package cern.acctesting.service.schedule.impl;
+
+/**
+ * A growable array that can be copied in constant time. The values are stored in chunks of a fixed size that are shared between an array
+ * and its copies. Every array has an owner token and only changes the chunks and the chunk directory it owns; all other chunks are
+ * copied before they are changed. Copying an array gives both arrays new tokens, so neither of them changes the shared chunks anymore.
+ * Changing a value therefore copies at most the directory and one chunk, and reading a value is as fast as with two plain arrays.
+ * 
+ * @author Michael Galetzka
+ * 
+ * @param <V>
+ *            the type of the values
+ */
+public class ChunkedArray<V> {
+
+    private static final int CHUNK_BITS = 6;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    private Object owner;
+    private Directory directory;
+    private int size;
+
+    public ChunkedArray() {
+        owner = new Object();
+        directory = new Directory(owner, new Object[0][], new Object[0]);
+        size = 0;
+    }
+
+    /**
+     * Creates a copy of the given array in constant time. The values themselves are not copied.
+     * 
+     * @param array
+     *            the array to copy
+     */
+    public ChunkedArray(ChunkedArray<V> array) {
+        // neither array owns the shared chunks afterwards
+        array.owner = new Object();
+        owner = new Object();
+        directory = array.directory;
+        size = array.size;
+    }
+
+    /**
+     * @return the number of values in the array
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @param index
+     *            the index of the value, between 0 and {@link #size()} - 1
+     * @return the value at the index
+     */
+    @SuppressWarnings("unchecked")
+    public V get(int index) {
+        if (index >= size) {
+            throw new ArrayIndexOutOfBoundsException(index);
+        }
+        return (V) directory.chunks[index >>> CHUNK_BITS][index & CHUNK_MASK];
+    }
+
+    /**
+     * Replaces the value at the given index.
+     * 
+     * @param index
+     *            the index of the value, between 0 and {@link #size()} - 1
+     * @param value
+     *            the new value
+     */
+    public void set(int index, V value) {
+        if (index >= size) {
+            throw new ArrayIndexOutOfBoundsException(index);
+        }
+        writableChunk(index >>> CHUNK_BITS)[index & CHUNK_MASK] = value;
+    }
+
+    /**
+     * Appends the value to the end of the array.
+     * 
+     * @param value
+     *            the value to add
+     * @return the index of the new value
+     */
+    public int add(V value) {
+        int chunk = size >>> CHUNK_BITS;
+        Directory writable = writableDirectory();
+        if (chunk == writable.chunks.length) {
+            int length = Math.max(4, chunk * 2);
+            Object[][] chunks = new Object[length][];
+            Object[] chunkOwners = new Object[length];
+            System.arraycopy(writable.chunks, 0, chunks, 0, chunk);
+            System.arraycopy(writable.chunkOwners, 0, chunkOwners, 0, chunk);
+            directory = new Directory(owner, chunks, chunkOwners);
+        }
+        if (directory.chunks[chunk] == null) {
+            directory.chunks[chunk] = new Object[CHUNK_SIZE];
+            directory.chunkOwners[chunk] = owner;
+        }
+        size++;
+        set(size - 1, value);
+        return size - 1;
+    }
+
+    /**
+     * Finds the next index at which this array and the other array contain different values. The values are compared by identity, an
+     * index beyond the size of an array counts as {@code null}. Chunks that are shared by both arrays are skipped as a whole, so comparing
+     * an array with one of its copies only looks at the values of the chunks that have been changed since the copy was made.
+     * 
+     * @param other
+     *            the array to compare with
+     * @param from
+     *            the index to start the search at
+     * @return the first index not before the given one with different values or -1 if there is none
+     */
+    public int nextDifference(ChunkedArray<V> other, int from) {
+        if (directory == other.directory && size == other.size) {
+            return -1;
+        }
+        int end = Math.max(size, other.size);
+        int index = from;
+        while (index < end) {
+            int chunk = index >>> CHUNK_BITS;
+            int chunkEnd = Math.min(end, (chunk + 1) << CHUNK_BITS);
+            // shared chunks are never changed again, so they contain the same values
+            if (getChunk(chunk) != other.getChunk(chunk)) {
+                for (; index < chunkEnd; index++) {
+                    if (getOrNull(index) != other.getOrNull(index)) {
+                        return index;
+                    }
+                }
+            }
+            index = chunkEnd;
+        }
+        return -1;
+    }
+
+    private Object[] getChunk(int chunk) {
+        return chunk < directory.chunks.length ? directory.chunks[chunk] : null;
+    }
+
+    private Object getOrNull(int index) {
+        return index < size ? directory.chunks[index >>> CHUNK_BITS][index & CHUNK_MASK] : null;
+    }
+
+    private Directory writableDirectory() {
+        if (directory.owner != owner) {
+            directory = new Directory(owner, directory.chunks.clone(), directory.chunkOwners.clone());
+        }
+        return directory;
+    }
+
+    private Object[] writableChunk(int chunk) {
+        Directory writable = writableDirectory();
+        if (writable.chunkOwners[chunk] != owner) {
+            writable.chunks[chunk] = writable.chunks[chunk].clone();
+            writable.chunkOwners[chunk] = owner;
+        }
+        return writable.chunks[chunk];
+    }
+
+    /**
+     * The chunks of an array together with the owners of the chunks.
+     */
+    private static final class Directory {
+        private final Object owner;
+        private final Object[][] chunks;
+        private final Object[] chunkOwners;
+
+        public Directory(Object owner, Object[][] chunks, Object[] chunkOwners) {
+            this.owner = owner;
+            this.chunks = chunks;
+            this.chunkOwners = chunkOwners;
+        }
+    }
+}
@@ -19,6 +19,7 @@ package cern.acctesting.service.schedule.impl;
 
 import cern.acctesting.service.schedule.ScheduledItem;
 import cern.acctesting.service.schedule.exception.ViolatorUpdateInvalid;
+import cern.acctesting.service.schedule.impl.ViolationsManager.EvaluationContext;
 
 public class ConfigurationsManager {
 
@@ -27,6 +28,8 @@ public class ConfigurationsManager {
     private Violator referenceViolator;
     private Configuration referenceConfiguration;
     private Configuration bestConfiguration;
+    private EvaluationContext evaluationContext;
+    private int makespanWithoutViolator;
 
     public ConfigurationsManager(ViolationsManager violationsManager) {
         this.violationsManager = violationsManager;
@@ -37,10 +40,10 @@ public class ConfigurationsManager {
             return false;
         }
 
-        ScheduledItem newItem = plan.moveScheduledItem(violator.getScheduledItem().getItemToSchedule(), start);
+        // the item is not moved in the plan, the context evaluates the new start without changing anything
         ViolatorUpdate violatorUpdate;
         try {
-            violatorUpdate = violationsManager.tryViolatorUpdate(newItem, plan);
+            violatorUpdate = evaluationContext.evaluate(start);
         } catch (ViolatorUpdateInvalid e) {
             // the update failed since the new item conflicts against more constraints than the reference
             return false;
@@ -51,7 +54,8 @@ public class ConfigurationsManager {
 
         int referenceHardValue = referenceViolator.getHardViolationsValue();
         if (referenceHardValue > hardValue || (referenceHardValue == hardValue && referenceViolator.getSoftViolationsValue() > softValue)) {
-            Configuration newConfiguration = new Configuration(violatorUpdate, plan.getMakespan());
+            int makespan = Math.max(makespanWithoutViolator, start + violator.getScheduledItem().getItemToSchedule().getMaxDuration());
+            Configuration newConfiguration = new Configuration(violatorUpdate, makespan);
             if (bestConfiguration == null || newConfiguration.compareTo(bestConfiguration) == -1) {
                 bestConfiguration = newConfiguration;
             }
@@ -71,11 +75,6 @@ public class ConfigurationsManager {
         return true;
     }
 
-    public void applyReferenceConfiguration(SchedulePlan plan) {
-        ScheduledItem oldItem = referenceConfiguration.violator.getScheduledItem();
-        plan.moveScheduledItem(oldItem.getItemToSchedule(), oldItem.getStart());
-    }
-
     public ScheduledItem getBestConfiguration() {
         return bestConfiguration == null ? referenceConfiguration.violator.getScheduledItem() : bestConfiguration.violator
                 .getScheduledItem();
@@ -123,6 +122,16 @@ public class ConfigurationsManager {
         this.referenceViolator = violator;
         referenceConfiguration = new Configuration(violator, plan.getMakespan());
         bestConfiguration = null;
+        evaluationContext = violationsManager.createEvaluationContext(violator);
+        makespanWithoutViolator = plan.getMakespanWithout(violator.getScheduledItem().getItemToSchedule());
+    }
+
+    /**
+     * @return the makespan of the plan without the current violator. Every start value that lets the violator end after this value
+     *         increases the makespan of the plan.
+     */
+    public int getMakespanWithoutViolator() {
+        return makespanWithoutViolator;
     }
 
     public void resetPlanConfigurations() {
@@ -130,7 +139,7 @@ public class ConfigurationsManager {
     }
 
     public void addPlanConfiguration(SchedulePlan plan) {
-        ViolatorValues planValues = violationsManager.checkViolationsForPlan(plan);
+        ViolatorValues planValues = violationsManager.calculatePlanValues(plan);
         PlanConfiguration newConfiguration = new PlanConfiguration(plan, planValues);
         if (bestPlanConfiguration == null || newConfiguration.compareTo(bestPlanConfiguration) == -1) {
             bestPlanConfiguration = newConfiguration;
@@ -0,0 +1,139 @@
+// @formatter:off
+ /*******************************************************************************
+ *
+ * This file is part of JScheduleX.
+ * 
+ * Copyright (c) 2012 CERN.
+ *
+ * This software is distributed under the terms of the GNU Lesser General
+ * Public Licence version 3 (LGPL Version 3), copied verbatim in the file COPYING
+ * 
+ * In applying this licence, CERN does not waive the privileges and immunities
+ * granted to it by virtue of its status as an Intergovernmental Organization
+ * or submit itself to any jurisdiction.
+ * 
+ ******************************************************************************/
+// @formatter:on
+
+
+package cern.acctesting.service.schedule.impl;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+import cern.acctesting.service.schedule.constraint.ItemPairConstraint;
+
+/**
+ * A snapshot of the size of the constraint graph the {@link ViolationsManager} built for its current plan. The graph contains an edge for
+ * every pair of items that is connected by at least one pair constraint. The numbers can be used to estimate the time and memory a
+ * scheduling run of a similar problem needs.
+ * 
+ * @author Michael Galetzka
+ * 
+ */
+public class ConstraintGraphStatistics {
+
+    private final int itemCount;
+    private final int fixedItemCount;
+    private final int pairCount;
+    private final int pairsWithFixedItem;
+    private final int pairsOfFixedItems;
+    private final int maxDegree;
+    private final int[] degreeHistogram;
+    private final Map<ItemPairConstraint, Integer> pairsPerConstraint;
+    private final int predictionBlockCount;
+
+    public ConstraintGraphStatistics(int itemCount, int fixedItemCount, int pairCount, int pairsWithFixedItem, int pairsOfFixedItems,
+            int maxDegree, int[] degreeHistogram, Map<ItemPairConstraint, Integer> pairsPerConstraint, int predictionBlockCount) {
+        this.itemCount = itemCount;
+        this.fixedItemCount = fixedItemCount;
+        this.pairCount = pairCount;
+        this.pairsWithFixedItem = pairsWithFixedItem;
+        this.pairsOfFixedItems = pairsOfFixedItems;
+        this.maxDegree = maxDegree;
+        this.degreeHistogram = degreeHistogram.clone();
+        this.pairsPerConstraint = Collections.unmodifiableMap(pairsPerConstraint);
+        this.predictionBlockCount = predictionBlockCount;
+    }
+
+    /**
+     * @return the number of items in the plan, including the fixed items
+     */
+    public int getItemCount() {
+        return itemCount;
+    }
+
+    /**
+     * @return the number of items that cannot be moved
+     */
+    public int getFixedItemCount() {
+        return fixedItemCount;
+    }
+
+    /**
+     * @return the number of connected pairs of items, which is the number of edges of the graph
+     */
+    public int getPairCount() {
+        return pairCount;
+    }
+
+    /**
+     * @return the number of pairs with exactly one fixed item
+     */
+    public int getPairsWithFixedItem() {
+        return pairsWithFixedItem;
+    }
+
+    /**
+     * @return the number of pairs of two fixed items. These pairs are never checked.
+     */
+    public int getPairsOfFixedItems() {
+        return pairsOfFixedItems;
+    }
+
+    /**
+     * @return the biggest number of partners of a single item
+     */
+    public int getMaxDegree() {
+        return maxDegree;
+    }
+
+    /**
+     * @return the average number of partners of an item
+     */
+    public double getAverageDegree() {
+        return itemCount == 0 ? 0 : 2.0 * pairCount / itemCount;
+    }
+
+    /**
+     * Returns the distribution of the number of partners of the items. The first entry counts the items without any partner, the entry
+     * {@code i > 0} counts the items with at least 2<sup>i - 1</sup> and less than 2<sup>i</sup> partners.
+     * 
+     * @return the number of items per degree range
+     */
+    public int[] getDegreeHistogram() {
+        return degreeHistogram.clone();
+    }
+
+    /**
+     * @return the number of pairs every pair constraint has to be checked for
+     */
+    public Map<ItemPairConstraint, Integer> getPairsPerConstraint() {
+        return pairsPerConstraint;
+    }
+
+    /**
+     * @return the number of prediction blocks the predictor keeps for the pairs, or 0 if the prediction is not used
+     */
+    public int getPredictionBlockCount() {
+        return predictionBlockCount;
+    }
+
+    @Override
+    public String toString() {
+        return "items: " + itemCount + " (fixed: " + fixedItemCount + "), pairs: " + pairCount + " (with fixed item: " + pairsWithFixedItem
+                + ", of fixed items: " + pairsOfFixedItems + "), max degree: " + maxDegree + ", degree histogram: "
+                + Arrays.toString(degreeHistogram) + ", prediction blocks: " + predictionBlockCount;
+    }
+}
@@ -0,0 +1,99 @@
+// @formatter:off
+ /*******************************************************************************
+ *
+ * This file is part of JScheduleX.
+ * 
+ * Copyright (c) 2012 CERN.
+ *
+ * This software is distributed under the terms of the GNU Lesser General
+ * Public Licence version 3 (LGPL Version 3), copied verbatim in the file COPYING
+ * 
+ * In applying this licence, CERN does not waive the privileges and immunities
+ * granted to it by virtue of its status as an Intergovernmental Organization
+ * or submit itself to any jurisdiction.
+ * 
+ ******************************************************************************/
+// @formatter:on
+
+package cern.acctesting.service.schedule.impl;
+
+/**
+ * Collects statistics about the evaluations of one constraint during a scheduling run: how often it was evaluated, how often it was
+ * violated and how long an evaluation takes. The time is only measured for every {@value #SAMPLE_INTERVAL}th evaluation, as reading the
+ * clock is not much cheaper than evaluating a simple constraint.
+ * <p>
+ * The statistics are used to order the constraints so that the ones that are cheap and frequently violated are evaluated first, because
+ * they are the most likely to reject a bad candidate early. The counters are not synchronized, as small inaccuracies do not matter for
+ * that purpose.
+ * 
+ * @author Michael Galetzka
+ * 
+ */
+public class ConstraintStatistics {
+
+    private static final int SAMPLE_INTERVAL = 32;
+
+    /**
+     * The value returned by {@link #startEvaluation()} for evaluations that are not sampled.
+     */
+    static final long NOT_SAMPLED = -1;
+
+    private long evaluations;
+    private long violations;
+    private long sampledEvaluations;
+    private long sampledNanos;
+
+    /**
+     * Must be called right before the constraint is evaluated.
+     * 
+     * @return the value that has to be passed to {@link #finishEvaluation(long, boolean)}, the start time if the evaluation is sampled and
+     *         {@link #NOT_SAMPLED} otherwise
+     */
+    public long startEvaluation() {
+        if (evaluations++ % SAMPLE_INTERVAL != 0) {
+            return NOT_SAMPLED;
+        }
+        // the decision is kept in the returned value, so evaluations that overlap do not interfere
+        long start = System.nanoTime();
+        return start == NOT_SAMPLED ? start - 1 : start;
+    }
+
+    /**
+     * Must be called right after the constraint has been evaluated.
+     * 
+     * @param start
+     *            the value returned by {@link #startEvaluation()}
+     * @param violated
+     *            {@code true} if the constraint was not fulfilled
+     */
+    public void finishEvaluation(long start, boolean violated) {
+        if (start != NOT_SAMPLED) {
+            sampledNanos += System.nanoTime() - start;
+            sampledEvaluations++;
+        }
+        if (violated) {
+            violations++;
+        }
+    }
+
+    /**
+     * Returns the average time that has to be spent on evaluations of the constraint until it is violated once. Constraints with a smaller
+     * value should be evaluated first.
+     * 
+     * @return the expected costs to find a violation of the constraint
+     */
+    public double getCostPerViolation() {
+        double averageCosts = sampledEvaluations == 0 ? 1 : Math.max(1, (double) sampledNanos / sampledEvaluations);
+        // unknown constraints are assumed to be violated every second time
+        double violationRate = (violations + 1.0) / (evaluations + 2.0);
+        return averageCosts / violationRate;
+    }
+
+    public long getEvaluations() {
+        return evaluations;
+    }
+
+    public long getViolations() {
+        return violations;
+    }
+}
@@ -0,0 +1,202 @@
+// @formatter:off
+ /*******************************************************************************
+ *
+ * This file is part of JScheduleX.
+ * 
+ * Copyright (c) 2012 CERN.
+ *
+ * This software is distributed under the terms of the GNU Lesser General
+ * Public Licence version 3 (LGPL Version 3), copied verbatim in the file COPYING
+ * 
+ * In applying this licence, CERN does not waive the privileges and immunities
+ * granted to it by virtue of its status as an Intergovernmental Organization
+ * or submit itself to any jurisdiction.
+ * 
+ ******************************************************************************/
+// @formatter:on
+
+
+package cern.acctesting.service.schedule.impl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import cern.acctesting.service.schedule.constraint.UpdateableConstraint;
+import cern.acctesting.service.schedule.exception.SchedulingException;
+
+/**
+ * Runs the updates of {@link UpdateableConstraint}s. By default, the constraints are updated one after another by the calling thread. The
+ * updates can also be run in parallel, or be left running in the background, in which case the scheduler continues to use the data of
+ * the last completed update. The first update of a constraint is always waited for, as there is no data to use before it.
+ * 
+ * @author Michael Galetzka
+ * 
+ */
+public class ConstraintUpdater {
+
+    private ExecutorService executor;
+    private boolean updatingInParallel;
+    private final Map<UpdateableConstraint, Future<?>> runningUpdates = new IdentityHashMap<UpdateableConstraint, Future<?>>();
+    private final Set<UpdateableConstraint> updatedConstraints = Collections
+            .newSetFromMap(new IdentityHashMap<UpdateableConstraint, Boolean>());
+
+    /**
+     * @return {@code true} if the updates are run in parallel, {@code false} if they are run one after another by the calling thread
+     */
+    public boolean isUpdatingInParallel() {
+        return updatingInParallel;
+    }
+
+    /**
+     * Controls if the constraints are updated in parallel. This is disabled by default, as the updates of all constraints have to be
+     * able to run at the same time on other threads to enable it.
+     * 
+     * @param updatingInParallel
+     *            {@code true} if the constraints should be updated in parallel
+     */
+    public void setUpdatingInParallel(boolean updatingInParallel) {
+        this.updatingInParallel = updatingInParallel;
+    }
+
+    /**
+     * Updates all given constraints and waits until all updates are finished. Updates that are still running in the background are waited
+     * for instead of starting another one. If one of the updates fails, the method still waits for the other ones before the exception is
+     * thrown.
+     * 
+     * @param constraints
+     *            the constraints to update
+     */
+    public void update(List<UpdateableConstraint> constraints) {
+        List<Future<?>> updates = new ArrayList<Future<?>>(constraints.size());
+        List<UpdateableConstraint> ownUpdates = new ArrayList<UpdateableConstraint>(constraints.size());
+        for (UpdateableConstraint constraint : constraints) {
+            Future<?> runningUpdate = runningUpdates.remove(constraint);
+            if (runningUpdate != null) {
+                updates.add(runningUpdate);
+            }
+            else if (updatingInParallel && !ownUpdates.isEmpty()) {
+                updates.add(submit(constraint));
+            }
+            else {
+                // one of the parallel updates or all of the sequential ones are run by the calling thread
+                ownUpdates.add(constraint);
+            }
+        }
+
+        boolean updated = false;
+        try {
+            for (UpdateableConstraint constraint : ownUpdates) {
+                constraint.updateConstraint();
+            }
+            updated = true;
+        }
+        finally {
+            // the other updates must not keep changing the constraints after the method is left, the first exception is reported
+            waitForAll(updates, updated);
+        }
+        updatedConstraints.addAll(constraints);
+    }
+
+    /**
+     * Starts the update of all given constraints in the background and returns immediately. No update is started for a constraint whose
+     * previous update is still running. Constraints that have never been updated before are updated by {@link #update(List)} instead, so
+     * the method only returns once they have data to use. If one of the previous updates failed, its exception is thrown by this method.
+     * 
+     * @param constraints
+     *            the constraints to update
+     */
+    public void updateInBackground(List<UpdateableConstraint> constraints) {
+        Iterator<Entry<UpdateableConstraint, Future<?>>> iterator = runningUpdates.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Future<?> update = iterator.next().getValue();
+            if (update.isDone()) {
+                iterator.remove();
+                waitFor(update);
+            }
+        }
+
+        List<UpdateableConstraint> firstUpdates = new ArrayList<UpdateableConstraint>();
+        for (UpdateableConstraint constraint : constraints) {
+            if (!updatedConstraints.contains(constraint)) {
+                firstUpdates.add(constraint);
+            }
+        }
+        if (!firstUpdates.isEmpty()) {
+            update(firstUpdates);
+        }
+
+        for (UpdateableConstraint constraint : constraints) {
+            if (!runningUpdates.containsKey(constraint) && !firstUpdates.contains(constraint)) {
+                runningUpdates.put(constraint, submit(constraint));
+            }
+        }
+    }
+
+    private Future<?> submit(final UpdateableConstraint constraint) {
+        if (executor == null) {
+            executor = Executors.newCachedThreadPool(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "constraint-updater");
+                    // the updates must not keep the application alive
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return executor.submit(new Runnable() {
+            @Override
+            public void run() {
+                constraint.updateConstraint();
+            }
+        });
+    }
+
+    private static void waitFor(Future<?> update) {
+        waitForAll(Collections.<Future<?>> singletonList(update), true);
+    }
+
+    /**
+     * Waits until all given updates are finished. If an update failed, its exception is thrown once all updates are finished. If the
+     * thread is interrupted, the remaining updates are cancelled.
+     */
+    private static void waitForAll(List<Future<?>> updates, boolean reportingFailure) {
+        Throwable failure = null;
+        for (Future<?> update : updates) {
+            try {
+                update.get();
+            }
+            catch (InterruptedException e) {
+                for (Future<?> remainingUpdate : updates) {
+                    remainingUpdate.cancel(true);
+                }
+                Thread.currentThread().interrupt();
+                throw new SchedulingException("Interrupted while waiting for the update of a constraint.");
+            }
+            catch (ExecutionException e) {
+                if (failure == null) {
+                    failure = e.getCause();
+                }
+            }
+        }
+
+        if (reportingFailure && failure != null) {
+            // updateConstraint cannot throw checked exceptions
+            if (failure instanceof Error) {
+                throw (Error) failure;
+            }
+            throw (RuntimeException) failure;
+        }
+    }
+}
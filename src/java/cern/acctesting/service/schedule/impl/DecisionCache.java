@@ -0,0 +1,128 @@
+// @formatter:off
+ /*******************************************************************************
+ *
+ * This file is part of JScheduleX.
+ * 
+ * Copyright (c) 2012 CERN.
+ *
+ * This software is distributed under the terms of the GNU Lesser General
+ * Public Licence version 3 (LGPL Version 3), copied verbatim in the file COPYING
+ * 
+ * In applying this licence, CERN does not waive the privileges and immunities
+ * granted to it by virtue of its status as an Intergovernmental Organization
+ * or submit itself to any jurisdiction.
+ * 
+ ******************************************************************************/
+// @formatter:on
+
+package cern.acctesting.service.schedule.impl;
+
+import cern.acctesting.service.schedule.ItemToSchedule;
+import cern.acctesting.service.schedule.constraint.ConstraintDecision;
+
+/**
+ * A cache for the decisions of {@link cern.acctesting.service.schedule.constraint.TranslationInvariantConstraint}s. Such a decision is
+ * identified by the constraint, the two checked items and the distance between their start values. The cache has a fixed number of slots
+ * and every decision can only be stored in the one slot its key is hashed to, so a new decision simply replaces the old one in that slot.
+ * This keeps the memory bounded and makes lookups a matter of one array access and a few integer comparisons.
+ * <p>
+ * Entries are immutable and are written with a single reference assignment, so concurrent readers either see a complete entry or none
+ * at all.
+ * 
+ * @author Michael Galetzka
+ * 
+ */
+public class DecisionCache {
+
+    private final Entry[] entries;
+    private final int mask;
+
+    /**
+     * Creates a new cache.
+     * 
+     * @param capacity
+     *            the number of decisions the cache can hold at most. The value is rounded up to the next power of two.
+     */
+    public DecisionCache(int capacity) {
+        int size = Integer.highestOneBit(Math.max(capacity, 2) - 1) << 1;
+        entries = new Entry[size];
+        mask = size - 1;
+    }
+
+    /**
+     * Returns the cached decision of the constraint for the given pair or {@code null} if the decision is not known.
+     * 
+     * @param constraintIndex
+     *            the index of the constraint in the list of pair constraints
+     * @param item1
+     *            the first item of the pair
+     * @param item2
+     *            the second item of the pair
+     * @param offset
+     *            the start of the second item minus the start of the first item
+     * @return the cached decision or {@code null}
+     */
+    public ConstraintDecision get(int constraintIndex, ItemToSchedule item1, ItemToSchedule item2, int offset) {
+        Entry entry = entries[slot(constraintIndex, item1.getId(), item2.getId(), offset)];
+        if (entry != null && entry.offset == offset && entry.constraintIndex == constraintIndex && entry.item1 == item1
+                && entry.item2 == item2) {
+            return entry.decision;
+        }
+        return null;
+    }
+
+    /**
+     * Stores the decision of the constraint for the given pair, replacing any other decision that was stored in the same slot.
+     * 
+     * @param constraintIndex
+     *            the index of the constraint in the list of pair constraints
+     * @param item1
+     *            the first item of the pair
+     * @param item2
+     *            the second item of the pair
+     * @param offset
+     *            the start of the second item minus the start of the first item
+     * @param decision
+     *            the decision of the constraint
+     */
+    public void put(int constraintIndex, ItemToSchedule item1, ItemToSchedule item2, int offset, ConstraintDecision decision) {
+        entries[slot(constraintIndex, item1.getId(), item2.getId(), offset)] = new Entry(constraintIndex, item1, item2, offset, decision);
+    }
+
+    /**
+     * Removes all decisions from the cache.
+     */
+    public void clear() {
+        for (int i = 0; i < entries.length; i++) {
+            entries[i] = null;
+        }
+    }
+
+    private int slot(int constraintIndex, int id1, int id2, int offset) {
+        int hash = constraintIndex;
+        hash = hash * 31 + id1;
+        hash = hash * 31 + id2;
+        hash = hash * 31 + offset;
+        // spread the bits, as ids and offsets tend to be small and close to each other
+        hash ^= hash >>> 16;
+        hash *= 0x85ebca6b;
+        hash ^= hash >>> 13;
+        return hash & mask;
+    }
+
+    private static final class Entry {
+        private final int constraintIndex;
+        private final ItemToSchedule item1;
+        private final ItemToSchedule item2;
+        private final int offset;
+        private final ConstraintDecision decision;
+
+        public Entry(int constraintIndex, ItemToSchedule item1, ItemToSchedule item2, int offset, ConstraintDecision decision) {
+            this.constraintIndex = constraintIndex;
+            this.item1 = item1;
+            this.item2 = item2;
+            this.offset = offset;
+            this.decision = decision;
+        }
+    }
+}
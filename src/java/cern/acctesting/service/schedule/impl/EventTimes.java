@@ -0,0 +1,326 @@
+// @formatter:off
+ /*******************************************************************************
+ *
+ * This file is part of JScheduleX.
+ * 
+ * Copyright (c) 2012 CERN.
+ *
+ * This software is distributed under the terms of the GNU Lesser General
+ * Public Licence version 3 (LGPL Version 3), copied verbatim in the file COPYING
+ * 
+ * In applying this licence, CERN does not waive the privileges and immunities
+ * granted to it by virtue of its status as an Intergovernmental Organization
+ * or submit itself to any jurisdiction.
+ * 
+ ******************************************************************************/
+// @formatter:on
+
+
+package cern.acctesting.service.schedule.impl;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A sorted multiset of the points in time at which items start or end. The times are kept in a treap whose nodes are never modified after
+ * their creation: every change creates new nodes for the path to the changed time and shares all other nodes with the previous version.
+ * This makes copies and iterators cheap, as they only have to remember the root of the version they were created for, and iterators stay
+ * valid while the times are changed.
+ * 
+ * @author Michael Galetzka
+ * 
+ */
+public class EventTimes {
+
+    private Node root;
+    private int size;
+
+    public EventTimes() {
+        root = null;
+        size = 0;
+    }
+
+    /**
+     * Creates a copy of the given times. The copy shares all nodes with the original, so it is created in constant time.
+     * 
+     * @param times
+     *            the times to copy
+     */
+    public EventTimes(EventTimes times) {
+        root = times.root;
+        size = times.size;
+    }
+
+    /**
+     * @return the number of different times
+     */
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return root == null;
+    }
+
+    /**
+     * @param time
+     *            the time to look up
+     * @return how often the time has been added
+     */
+    public int count(int time) {
+        Node node = root;
+        while (node != null) {
+            if (time < node.time) {
+                node = node.left;
+            }
+            else if (time > node.time) {
+                node = node.right;
+            }
+            else {
+                return node.count;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * @return the biggest time
+     * @throws NoSuchElementException
+     *             if there are no times
+     */
+    public int last() {
+        if (root == null) {
+            throw new NoSuchElementException("There are no times.");
+        }
+        Node node = root;
+        while (node.right != null) {
+            node = node.right;
+        }
+        return node.time;
+    }
+
+    /**
+     * @param time
+     *            the time to start with
+     * @return the biggest time that is smaller than the given one or {@code null} if there is none
+     */
+    public Integer lower(int time) {
+        Integer result = null;
+        Node node = root;
+        while (node != null) {
+            if (node.time < time) {
+                result = node.time;
+                node = node.right;
+            }
+            else {
+                node = node.left;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Adds the time once.
+     * 
+     * @param time
+     *            the time to add
+     */
+    public void add(int time) {
+        if (count(time) == 0) {
+            size++;
+        }
+        root = add(root, time);
+    }
+
+    /**
+     * Removes the time once.
+     * 
+     * @param time
+     *            the time to remove
+     * @return {@code false} if the time was not contained
+     */
+    public boolean remove(int time) {
+        int count = count(time);
+        if (count == 0) {
+            return false;
+        }
+        if (count == 1) {
+            size--;
+        }
+        root = remove(root, time);
+        return true;
+    }
+
+    /**
+     * Adds the given value to all times. The order of the times does not change, so the tree keeps its shape.
+     * 
+     * @param shiftValue
+     *            the value to add
+     */
+    public void shift(int shiftValue) {
+        root = shift(root, shiftValue);
+    }
+
+    /**
+     * Returns an iterator over the different times within the given range in ascending order. The iterator works on the times as they are
+     * now and is not affected by later changes.
+     * 
+     * @param from
+     *            the lowest time to return
+     * @param to
+     *            the time to stop at, it is not returned
+     * @return the iterator
+     */
+    public Iterator<Integer> iterator(int from, int to) {
+        return new TimeIterator(root, from, to);
+    }
+
+    private static Node add(Node node, int time) {
+        if (node == null) {
+            return new Node(time, 1, priority(time), null, null);
+        }
+        if (time < node.time) {
+            Node left = add(node.left, time);
+            if (left.priority > node.priority) {
+                // rotate the new node up, so the heap order of the priorities is kept
+                return left.withChildren(left.left, node.withChildren(left.right, node.right));
+            }
+            return node.withChildren(left, node.right);
+        }
+        if (time > node.time) {
+            Node right = add(node.right, time);
+            if (right.priority > node.priority) {
+                return right.withChildren(node.withChildren(node.left, right.left), right.right);
+            }
+            return node.withChildren(node.left, right);
+        }
+        return new Node(time, node.count + 1, node.priority, node.left, node.right);
+    }
+
+    private static Node remove(Node node, int time) {
+        if (time < node.time) {
+            return node.withChildren(remove(node.left, time), node.right);
+        }
+        if (time > node.time) {
+            return node.withChildren(node.left, remove(node.right, time));
+        }
+        if (node.count > 1) {
+            return new Node(time, node.count - 1, node.priority, node.left, node.right);
+        }
+        return merge(node.left, node.right);
+    }
+
+    /**
+     * Merges two trees, all times of the first tree have to be smaller than the ones of the second tree.
+     */
+    private static Node merge(Node smaller, Node bigger) {
+        if (smaller == null) {
+            return bigger;
+        }
+        if (bigger == null) {
+            return smaller;
+        }
+        if (smaller.priority > bigger.priority) {
+            return smaller.withChildren(smaller.left, merge(smaller.right, bigger));
+        }
+        return bigger.withChildren(merge(smaller, bigger.left), bigger.right);
+    }
+
+    private static Node shift(Node node, int shiftValue) {
+        if (node == null) {
+            return null;
+        }
+        return new Node(node.time + shiftValue, node.count, node.priority, shift(node.left, shiftValue), shift(node.right, shiftValue));
+    }
+
+    /**
+     * The priorities of the treap nodes only have to look random, so they are derived from the keys to keep the trees deterministic.
+     */
+    static int priority(int key) {
+        int hash = key;
+        hash ^= hash >>> 16;
+        hash *= 0x85ebca6b;
+        hash ^= hash >>> 13;
+        hash *= 0xc2b2ae35;
+        hash ^= hash >>> 16;
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("[");
+        for (Iterator<Integer> iterator = iterator(Integer.MIN_VALUE, Integer.MAX_VALUE); iterator.hasNext();) {
+            int time = iterator.next();
+            builder.append(time).append('x').append(count(time));
+            if (iterator.hasNext()) {
+                builder.append(", ");
+            }
+        }
+        return builder.append(']').toString();
+    }
+
+    private static final class Node {
+        private final int time;
+        private final int count;
+        private final int priority;
+        private final Node left;
+        private final Node right;
+
+        public Node(int time, int count, int priority, Node left, Node right) {
+            this.time = time;
+            this.count = count;
+            this.priority = priority;
+            this.left = left;
+            this.right = right;
+        }
+
+        public Node withChildren(Node newLeft, Node newRight) {
+            return new Node(time, count, priority, newLeft, newRight);
+        }
+    }
+
+    private static final class TimeIterator implements Iterator<Integer> {
+        private final Deque<Node> path;
+        private final int to;
+
+        public TimeIterator(Node root, int from, int to) {
+            this.to = to;
+            path = new ArrayDeque<Node>();
+            // remember the nodes whose times and right subtrees still have to be visited
+            Node node = root;
+            while (node != null) {
+                if (node.time >= from) {
+                    path.push(node);
+                    node = node.left;
+                }
+                else {
+                    node = node.right;
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !path.isEmpty() && path.peek().time < to;
+        }
+
+        @Override
+        public Integer next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Node node = path.pop();
+            for (Node child = node.right; child != null; child = child.left) {
+                path.push(child);
+            }
+            return node.time;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException("The times can not be changed through the iterator.");
+        }
+    }
+}
@@ -18,6 +18,7 @@
 package cern.acctesting.service.schedule.impl;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
@@ -131,9 +132,10 @@ public class HeuristicRepairScheduling {
 
 	    if (plan.canBeMoved(violator.getScheduledItem())) {
 		boolean foundConfiguration = false;
-		for (int possibleStart : plan.getExistingStartValues()) {
+		for (int possibleStart : plan.getStartValues()) {
 		    if (foundConfiguration
-			    && plan.getMakespan() < (violator.getScheduledItem().getItemToSchedule().getMaxDuration() + possibleStart)) {
+			    && configurationsManager.getMakespanWithoutViolator() < (violator.getScheduledItem().getItemToSchedule()
+				    .getMaxDuration() + possibleStart)) {
 			// all following start values would not be accepted over the current best one
 			break;
 		    }
@@ -144,7 +146,6 @@ public class HeuristicRepairScheduling {
 	    boolean wasPossible = configurationsManager.applyBestConfiguration(plan);
 
 	    if (!wasPossible) {
-		configurationsManager.applyReferenceConfiguration(plan);
 		backsteps++;
 		violator = violationsManager.getBiggestViolator(violator);
 
@@ -208,10 +209,15 @@ public class HeuristicRepairScheduling {
     private void tryToMoveRequiredItems(Violator violator) {
 	SchedulePlan newPlan = plan.clone();
 
-	Map<ItemToSchedule, DependencyNode> dependencyLevels = new HashMap<ItemToSchedule, DependencyNode>();
-	addToTree(violator.getScheduledItem().getItemToSchedule(), dependencyLevels, newPlan, 0);
+	DependencyNode[] dependencyLevels = new DependencyNode[newPlan.getItemIndex().size()];
+	addToTree(violator.getItemIndex(), dependencyLevels, newPlan, 0);
 
-	SortedSet<DependencyNode> dependencyTree = new TreeSet<DependencyNode>(dependencyLevels.values());
+	SortedSet<DependencyNode> dependencyTree = new TreeSet<DependencyNode>();
+	for (DependencyNode dependencyNode : dependencyLevels) {
+	    if (dependencyNode != null) {
+		dependencyTree.add(dependencyNode);
+	    }
+	}
 
 	for (DependencyNode dependencyNode : dependencyTree) {
 	    newPlan.unschedule(dependencyNode.scheduledItem);
@@ -220,7 +226,7 @@ public class HeuristicRepairScheduling {
 	for (DependencyNode dependencyNode : dependencyTree) {
 	    ViolatorValues bestValues = null;
 	    ScheduledItem bestItem = null;
-	    for (int possibleStart : newPlan.getExistingStartValues()) {
+	    for (int possibleStart : newPlan.getStartValues()) {
 		ScheduledItem newItem = new ScheduledItem(dependencyNode.scheduledItem.getItemToSchedule(), possibleStart);
 		ViolatorValues violatorValues = violationsManager.checkViolationsForItem(newItem, newPlan);
 		if (bestValues == null
@@ -236,18 +242,18 @@ public class HeuristicRepairScheduling {
 	configurationsManager.addPlanConfiguration(newPlan);
     }
 
-    private void addToTree(ItemToSchedule item, Map<ItemToSchedule, DependencyNode> dependencyLevels, SchedulePlan newPlan, int level) {
-	DependencyNode node = dependencyLevels.get(item);
+    private void addToTree(int itemIndex, DependencyNode[] dependencyLevels, SchedulePlan newPlan, int level) {
+	DependencyNode node = dependencyLevels[itemIndex];
 	if (node == null) {
-	    node = new DependencyNode(newPlan.getScheduledItem(item), level);
-	    dependencyLevels.put(item, node);
+	    node = new DependencyNode(newPlan.getScheduledItem(itemIndex), level);
+	    dependencyLevels[itemIndex] = node;
 	}
 	if (node.level < level) {
 	    node.level = level;
 	}
-	for (ScheduledItem scheduled : newPlan.getDependentItems(item)) {
+	for (ScheduledItem scheduled : newPlan.getDependentItems(node.scheduledItem.getItemToSchedule())) {
 	    if (newPlan.canBeMoved(scheduled)) {
-		addToTree(scheduled.getItemToSchedule(), dependencyLevels, newPlan, level + 1);
+		addToTree(newPlan.getItemIndex().indexOf(scheduled.getItemToSchedule()), dependencyLevels, newPlan, level + 1);
 	    }
 	}
     }
@@ -301,10 +307,8 @@ public class HeuristicRepairScheduling {
 	 */
 	SchedulePlan toStartPlan = plan.clone();
 	toStartPlan.shiftAll(plan.getMakespan());
-	Collection<ScheduledItem> items = new HashSet<ScheduledItem>();
-	items.add(toStartPlan.getScheduledItem(violator.getScheduledItem().getItemToSchedule()));
 
-	shiftAndLock(items, new HashSet<ScheduledItem>(), toStartPlan, -plan.getMakespan());
+	shiftAndLock(violator.getItemIndex(), toStartPlan, -plan.getMakespan());
 	configurationsManager.addPlanConfiguration(toStartPlan);
 
     }
@@ -315,50 +319,63 @@ public class HeuristicRepairScheduling {
 	 */
 	SchedulePlan toEndPlan;
 	toEndPlan = plan.clone();
-	Collection<ScheduledItem> items = new HashSet<ScheduledItem>();
-	items.add(violator.getScheduledItem());
 
-	shiftAndLock(items, new HashSet<ScheduledItem>(), toEndPlan, plan.getMakespan());
+	shiftAndLock(violator.getItemIndex(), toEndPlan, plan.getMakespan());
 	configurationsManager.addPlanConfiguration(toEndPlan);
 
     }
 
-    private void shiftAndLock(Collection<ScheduledItem> items, Collection<ScheduledItem> lockedItems, SchedulePlan toEndPlan, int shiftValue) {
-
-	// retrieve all items which items are violated rigth now by the items to shift
-	Collection<ScheduledItem> violatedItems = new HashSet<ScheduledItem>();
-	for (ScheduledItem itemToShift : items) {
-	    violatedItems.addAll(violationsManager.getHardViolatedItems(itemToShift, toEndPlan));
-	}
-
-	// shift the items that need it and lock them
-	Collection<ScheduledItem> shiftedItems = new HashSet<ScheduledItem>();
-	for (ScheduledItem itemToShift : items) {
-	    shiftedItems.add(toEndPlan.moveScheduledItem(itemToShift.getItemToSchedule(), itemToShift.getStart() + shiftValue));
-	}
-	lockedItems.addAll(shiftedItems);
+    /**
+     * Shifts the given item and, wave after wave, all items that are hard violated by the shift. Every item is shifted at most once.
+     */
+    private void shiftAndLock(int item, SchedulePlan toEndPlan, int shiftValue) {
+	BitSet items = new BitSet();
+	items.set(item);
+	BitSet lockedItems = new BitSet();
+	BitSet violatedItems = new BitSet();
+	BitSet newViolatedItems = new BitSet();
+
+	// the violations are checked with the scheduled items only, so the indexes of the plan are updated once all items are shifted
+	toEndPlan.beginTransaction();
+	while (!items.isEmpty()) {
+	    // retrieve all items which items are violated rigth now by the items to shift
+	    violatedItems.clear();
+	    violationsManager.collectHardViolatedItems(items, toEndPlan, violatedItems);
+
+	    // shift the items that need it and lock them
+	    for (int itemToShift = items.nextSetBit(0); itemToShift >= 0; itemToShift = items.nextSetBit(itemToShift + 1)) {
+		ScheduledItem scheduledItem = toEndPlan.getScheduledItem(itemToShift);
+		toEndPlan.moveTentatively(scheduledItem.getItemToSchedule(), scheduledItem.getStart() + shiftValue);
+	    }
+	    lockedItems.or(items);
 
-	// check which items are violated after the shift
-	Collection<ScheduledItem> newViolatedItems = new HashSet<ScheduledItem>();
-	for (ScheduledItem shiftedItem : shiftedItems) {
-	    newViolatedItems.addAll(violationsManager.getHardViolatedItems(shiftedItem, toEndPlan));
-	}
+	    // check which items are violated after the shift
+	    newViolatedItems.clear();
+	    violationsManager.collectHardViolatedItems(items, toEndPlan, newViolatedItems);
 
-	// check if other, additional items are violated because of the shift
-	newViolatedItems.removeAll(violatedItems);
-	if (!newViolatedItems.isEmpty()) {
+	    // check if other, additional items are violated because of the shift
+	    newViolatedItems.andNot(violatedItems);
 
 	    // check if one of the newly violated items has already been shifted before and is locked now
-	    Collection<ScheduledItem> checkCollection = new HashSet<ScheduledItem>(newViolatedItems);
-	    checkCollection.retainAll(lockedItems);
-	    if (!checkCollection.isEmpty()) { throw new SchedulingException(
+	    if (newViolatedItems.intersects(lockedItems)) { throw new SchedulingException(
 		    "The current plan can not be scheduled because it most likely contains a circular constraint of some kind. Dumping variable assignments. "
-			    + "lockedItems: " + lockedItems + ", newViolatedItems: " + newViolatedItems + ", toEndPlan: " + toEndPlan
-			    + ", original plan: " + plan); }
+			    + "lockedItems: " + getScheduledItems(lockedItems, toEndPlan) + ", newViolatedItems: "
+			    + getScheduledItems(newViolatedItems, toEndPlan) + ", toEndPlan: " + toEndPlan + ", original plan: " + plan); }
 
-	    // recursively shift the new violated items and lock them
-	    shiftAndLock(newViolatedItems, lockedItems, toEndPlan, shiftValue);
+	    // the new violated items are shifted and locked in the next wave
+	    BitSet shiftedItems = items;
+	    items = newViolatedItems;
+	    newViolatedItems = shiftedItems;
 	}
+	toEndPlan.commit();
+    }
+
+    private static Collection<ScheduledItem> getScheduledItems(BitSet items, SchedulePlan plan) {
+	Collection<ScheduledItem> scheduledItems = new ArrayList<ScheduledItem>(items.cardinality());
+	for (int item = items.nextSetBit(0); item >= 0; item = items.nextSetBit(item + 1)) {
+	    scheduledItems.add(plan.getScheduledItem(item));
+	}
+	return scheduledItems;
     }
 
     /**
@@ -379,6 +396,8 @@ public class HeuristicRepairScheduling {
          * possibilities:
          * - place them all at 0 (all overlapping) 
          * - place them as they come to the current possible end (<---- currently implemented)
+         * - place them as they come to the first gap after their required items that fits them (<---- currently implemented if the
+         *   constraints only care about the lanes and dependencies)
          * - sort them according to duration summary and place them to the current possible end (big to small) 
          * - as before, but inverse (small to big) 
          * - shuffle them and place them to the current possible end
@@ -387,9 +406,11 @@ public class HeuristicRepairScheduling {
 
 	for (ScheduledItem fixedItem : fixedItems) {
 	    plan.schedule(fixedItem);
-	    plan.fixateItem(fixedItem);
 	}
+	plan.fixateAll(fixedItems);
 
+	// gaps are only filled if no other constraint can be violated by it, otherwise the plan gets worse instead of better
+	boolean fillingGaps = violationsManager.isOnlyCheckingLanesAndDependencies();
 	Map<Lane, Integer> maximumValues = new HashMap<Lane, Integer>();
 	Set<ItemToSchedule> scheduledFromOldPlan = new HashSet<ItemToSchedule>();
 	// initialize the new plan from the old one - if one small changes are necessary then this will greatly speed up
@@ -416,7 +437,13 @@ public class HeuristicRepairScheduling {
 	    if (scheduledFromOldPlan.contains(itemToSchedule)) {
 		continue;
 	    }
-	    int start = getPossibleStart(maximumValues, itemToSchedule);
+	    int start;
+	    if (fillingGaps) {
+		start = plan.getFreeStart(itemToSchedule, getRequiredEnd(itemToSchedule));
+	    }
+	    else {
+		start = getPossibleStart(maximumValues, itemToSchedule);
+	    }
 	    ScheduledItem scheduledItem = plan.add(itemToSchedule, start);
 	    updateMaxLaneValues(maximumValues, scheduledItem);
 	}
@@ -442,6 +469,20 @@ public class HeuristicRepairScheduling {
 	return start;
     }
 
+    /**
+     * @return the time at which all required items of the item that are already part of the plan are finished
+     */
+    private int getRequiredEnd(ItemToSchedule itemToSchedule) {
+	int start = 0;
+	for (ItemToSchedule required : itemToSchedule.getRequiredItems()) {
+	    ScheduledItem scheduledRequired = plan.getScheduledItem(required);
+	    if (scheduledRequired != null) {
+		start = Math.max(start, scheduledRequired.getStart() + required.getMaxDuration());
+	    }
+	}
+	return start;
+    }
+
     /**
      * After each successful movement operation the scheduler will take a snapshot of the current configuration of all the scheduled items.
      * This method returns a list of these snapshots in a chronological order. This is very helpful for debugging and to visualize the
@@ -0,0 +1,232 @@
+// @formatter:off
+ /*******************************************************************************
+ *
+ * This file is part of JScheduleX.
+ * 
+ * Copyright (c) 2012 CERN.
+ *
+ * This software is distributed under the terms of the GNU Lesser General
+ * Public Licence version 3 (LGPL Version 3), copied verbatim in the file COPYING
+ * 
+ * In applying this licence, CERN does not waive the privileges and immunities
+ * granted to it by virtue of its status as an Intergovernmental Organization
+ * or submit itself to any jurisdiction.
+ * 
+ ******************************************************************************/
+// @formatter:on
+
+
+package cern.acctesting.service.schedule.impl;
+
+import java.util.Arrays;
+
+/**
+ * A hash map from int keys to int values that stores its entries in plain arrays, so no keys or values have to be boxed. Collisions are
+ * resolved by linear probing and removed entries are closed by shifting the following entries back, so no deletion markers are needed.
+ * <p>
+ * The entries can be iterated without creating an iterator by walking the slots with {@link #nextSlot(int)}, similar to
+ * {@link java.util.BitSet#nextSetBit(int)}.
+ * 
+ * @author Michael Galetzka
+ * 
+ */
+public class IntIntMap {
+
+    private static final int MIN_CAPACITY = 8;
+
+    private int[] keys;
+    private int[] values;
+    private boolean[] used;
+    private int mask;
+    private int size;
+
+    public IntIntMap() {
+        allocate(MIN_CAPACITY);
+    }
+
+    /**
+     * Creates a copy of the given map.
+     * 
+     * @param map
+     *            the map to copy
+     */
+    public IntIntMap(IntIntMap map) {
+        keys = map.keys.clone();
+        values = map.values.clone();
+        used = map.used.clone();
+        mask = map.mask;
+        size = map.size;
+    }
+
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        values = new int[capacity];
+        used = new boolean[capacity];
+        mask = capacity - 1;
+    }
+
+    /**
+     * @return the number of entries in the map
+     */
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public boolean containsKey(int key) {
+        return used[find(key)];
+    }
+
+    /**
+     * @param key
+     *            the key to look up
+     * @param defaultValue
+     *            the value to return if the key is not contained
+     * @return the value of the key or the default value
+     */
+    public int get(int key, int defaultValue) {
+        int slot = find(key);
+        return used[slot] ? values[slot] : defaultValue;
+    }
+
+    /**
+     * Associates the key with the given value, replacing any previous value.
+     * 
+     * @param key
+     *            the key
+     * @param value
+     *            the new value of the key
+     */
+    public void put(int key, int value) {
+        int slot = find(key);
+        if (!used[slot]) {
+            if ((size + 1) * 2 > keys.length) {
+                resize(keys.length * 2);
+                slot = find(key);
+            }
+            keys[slot] = key;
+            used[slot] = true;
+            size++;
+        }
+        values[slot] = value;
+    }
+
+    /**
+     * Removes the key from the map.
+     * 
+     * @param key
+     *            the key to remove
+     * @return {@code true} if the key was contained in the map
+     */
+    public boolean remove(int key) {
+        int slot = find(key);
+        if (!used[slot]) {
+            return false;
+        }
+        removeSlot(slot);
+        return true;
+    }
+
+    public void clear() {
+        Arrays.fill(used, false);
+        size = 0;
+    }
+
+    /**
+     * Returns the first slot at or after the given one that contains an entry.
+     * 
+     * @param slot
+     *            the slot to start with, 0 for the first call
+     * @return the next slot containing an entry or -1 if there is none
+     */
+    public int nextSlot(int slot) {
+        for (int i = slot; i < used.length; i++) {
+            if (used[i]) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @param slot
+     *            a slot returned by {@link #nextSlot(int)}
+     * @return the key stored in the slot
+     */
+    public int keyAt(int slot) {
+        return keys[slot];
+    }
+
+    /**
+     * @param slot
+     *            a slot returned by {@link #nextSlot(int)}
+     * @return the value stored in the slot
+     */
+    public int valueAt(int slot) {
+        return values[slot];
+    }
+
+    /**
+     * @return the slot containing the key or the empty slot where the key would be inserted
+     */
+    private int find(int key) {
+        int slot = hash(key) & mask;
+        while (used[slot] && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void removeSlot(int slot) {
+        // move the following entries of the probe sequence back, so no gap interrupts it
+        int gap = slot;
+        int next = (gap + 1) & mask;
+        while (used[next]) {
+            int home = hash(keys[next]) & mask;
+            if (((next - home) & mask) >= ((next - gap) & mask)) {
+                keys[gap] = keys[next];
+                values[gap] = values[next];
+                gap = next;
+            }
+            next = (next + 1) & mask;
+        }
+        used[gap] = false;
+        size--;
+    }
+
+    private void resize(int capacity) {
+        int[] oldKeys = keys;
+        int[] oldValues = values;
+        boolean[] oldUsed = used;
+        allocate(capacity);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldUsed[i]) {
+                int slot = find(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+                used[slot] = true;
+            }
+        }
+    }
+
+    static int hash(int key) {
+        // spread the bits, as start values and ids tend to be small and close to each other
+        int hash = key * 0x9e3779b9;
+        return hash ^ (hash >>> 16);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("{");
+        for (int slot = nextSlot(0); slot >= 0; slot = nextSlot(slot + 1)) {
+            if (builder.length() > 1) {
+                builder.append(", ");
+            }
+            builder.append(keys[slot]).append('=').append(values[slot]);
+        }
+        return builder.append('}').toString();
+    }
+}
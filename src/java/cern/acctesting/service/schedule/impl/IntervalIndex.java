@@ -0,0 +1,307 @@
+// @formatter:off
+ /*******************************************************************************
+ *
+ * This file is part of JScheduleX.
+ * 
+ * Copyright (c) 2012 CERN.
+ *
+ * This software is distributed under the terms of the GNU Lesser General
+ * Public Licence version 3 (LGPL Version 3), copied verbatim in the file COPYING
+ * 
+ * In applying this licence, CERN does not waive the privileges and immunities
+ * granted to it by virtue of its status as an Intergovernmental Organization
+ * or submit itself to any jurisdiction.
+ * 
+ ******************************************************************************/
+// @formatter:on
+
+
+package cern.acctesting.service.schedule.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import cern.acctesting.service.schedule.ScheduledItem;
+
+/**
+ * The intervals occupied by scheduled items on one lane. The intervals are kept in a treap ordered by their start, every node also knows
+ * the biggest end within its subtree, so the intervals overlapping a given range can be found without looking at the others.
+ * <p>
+ * An index is immutable: adding or removing an interval returns a new index that shares all unchanged nodes with the old one. The plans
+ * can therefore share the indexes of their lanes with their clones.
+ * 
+ * @author Michael Galetzka
+ * 
+ */
+public final class IntervalIndex {
+
+    /**
+     * The index without any intervals.
+     */
+    public static final IntervalIndex EMPTY = new IntervalIndex(null, 0);
+
+    private final Node root;
+    private final int size;
+
+    private IntervalIndex(Node root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    /**
+     * @return the number of intervals in the index
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Adds the interval occupied by the item.
+     * 
+     * @param item
+     *            the scheduled item, its start is the start of the interval
+     * @param end
+     *            the end of the interval
+     * @return the new index
+     */
+    public IntervalIndex add(ScheduledItem item, int end) {
+        return new IntervalIndex(add(root, new Node(item, end, null, null)), size + 1);
+    }
+
+    /**
+     * Removes the interval of the item.
+     * 
+     * @param item
+     *            the scheduled item whose interval was added before
+     * @return the new index
+     * @throws IllegalArgumentException
+     *             if the index does not contain the item
+     */
+    public IntervalIndex remove(ScheduledItem item) {
+        return new IntervalIndex(remove(root, item.getStart(), item.getItemToSchedule().getId()), size - 1);
+    }
+
+    /**
+     * Returns the items whose intervals overlap the given range.
+     * 
+     * @param from
+     *            the start of the range
+     * @param to
+     *            the end of the range, it is not part of the range
+     * @return the overlapping items ordered by their start
+     */
+    public List<ScheduledItem> getOverlapping(int from, int to) {
+        List<ScheduledItem> result = new ArrayList<ScheduledItem>();
+        collectOverlapping(root, from, to, result);
+        return result;
+    }
+
+    /**
+     * @param time
+     *            the time to start from
+     * @return the item with the smallest start that is at least the given time or {@code null} if there is none
+     */
+    public ScheduledItem getNext(int time) {
+        ScheduledItem result = null;
+        Node node = root;
+        while (node != null) {
+            if (node.start >= time) {
+                result = node.item;
+                node = node.left;
+            }
+            else {
+                node = node.right;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @param time
+     *            the time to start from
+     * @return the item with the biggest start that is smaller than the given time or {@code null} if there is none
+     */
+    public ScheduledItem getPrevious(int time) {
+        ScheduledItem result = null;
+        Node node = root;
+        while (node != null) {
+            if (node.start < time) {
+                result = node.item;
+                node = node.right;
+            }
+            else {
+                node = node.left;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Finds the earliest start for an interval of the given duration that does not overlap any interval of the index. Parts of the tree
+     * whose gaps are all too small are skipped, so only a few nodes have to be visited.
+     * 
+     * @param time
+     *            the earliest start that is allowed
+     * @param duration
+     *            the duration of the interval to place
+     * @return the earliest free start that is at least the given time
+     */
+    public int getFreeStart(int time, int duration) {
+        FreeStartSearch search = new FreeStartSearch(time, duration);
+        search.sweep(root);
+        return search.candidate;
+    }
+
+    private static void collectOverlapping(Node node, int from, int to, List<ScheduledItem> result) {
+        // no interval of the subtree ends after the start of the range
+        if (node == null || node.maxEnd <= from) {
+            return;
+        }
+        collectOverlapping(node.left, from, to, result);
+        if (node.start < to) {
+            if (node.end > from) {
+                result.add(node.item);
+            }
+            collectOverlapping(node.right, from, to, result);
+        }
+    }
+
+    private static Node add(Node node, Node newNode) {
+        if (node == null) {
+            return newNode;
+        }
+        if (newNode.compareTo(node.start, node.id) < 0) {
+            Node left = add(node.left, newNode);
+            if (left.priority > node.priority) {
+                return left.withChildren(left.left, node.withChildren(left.right, node.right));
+            }
+            return node.withChildren(left, node.right);
+        }
+        Node right = add(node.right, newNode);
+        if (right.priority > node.priority) {
+            return right.withChildren(node.withChildren(node.left, right.left), right.right);
+        }
+        return node.withChildren(node.left, right);
+    }
+
+    private static Node remove(Node node, int start, int id) {
+        if (node == null) {
+            throw new IllegalArgumentException("The index does not contain an item with the id " + id + " starting at " + start);
+        }
+        int comparison = -node.compareTo(start, id);
+        if (comparison < 0) {
+            return node.withChildren(remove(node.left, start, id), node.right);
+        }
+        if (comparison > 0) {
+            return node.withChildren(node.left, remove(node.right, start, id));
+        }
+        return merge(node.left, node.right);
+    }
+
+    private static Node merge(Node smaller, Node bigger) {
+        if (smaller == null) {
+            return bigger;
+        }
+        if (bigger == null) {
+            return smaller;
+        }
+        if (smaller.priority > bigger.priority) {
+            return smaller.withChildren(smaller.left, merge(smaller.right, bigger));
+        }
+        return bigger.withChildren(merge(smaller, bigger.left), bigger.right);
+    }
+
+    /**
+     * Sweeps over the intervals in the order of their start and moves the candidate behind every interval it overlaps, until the next
+     * interval starts late enough.
+     */
+    private static final class FreeStartSearch {
+        private final int duration;
+        private int candidate;
+        private boolean found;
+
+        public FreeStartSearch(int time, int duration) {
+            this.duration = duration;
+            candidate = time;
+        }
+
+        public void sweep(Node node) {
+            if (node == null || found || node.maxEnd <= candidate) {
+                // the intervals of the subtree all end before the candidate
+                return;
+            }
+            if (node.minStart >= candidate + duration) {
+                found = true;
+                return;
+            }
+            if (node.maxGap < duration) {
+                // the subtree has no gap the interval fits in, so the candidate is moved behind it
+                candidate = node.maxEnd;
+                return;
+            }
+            sweep(node.left);
+            if (found) {
+                return;
+            }
+            if (node.start >= candidate + duration) {
+                found = true;
+                return;
+            }
+            candidate = Math.max(candidate, node.end);
+            sweep(node.right);
+        }
+    }
+
+    private static final class Node {
+        private final ScheduledItem item;
+        private final int start;
+        private final int id;
+        private final int end;
+        private final int minStart;
+        private final int maxEnd;
+        private final int maxGap;
+        private final int priority;
+        private final Node left;
+        private final Node right;
+
+        public Node(ScheduledItem item, int end, Node left, Node right) {
+            this.item = item;
+            this.start = item.getStart();
+            this.id = item.getItemToSchedule().getId();
+            this.end = end;
+            this.left = left;
+            this.right = right;
+            // the gaps of the subtree are the free ranges between its first start and its last end
+            int subtreeEnd = end;
+            int gap = 0;
+            if (left != null) {
+                subtreeEnd = Math.max(subtreeEnd, left.maxEnd);
+                gap = Math.max(left.maxGap, start - left.maxEnd);
+            }
+            if (right != null) {
+                // the gaps of the right subtree might be covered by this interval, so the value is an upper bound
+                gap = Math.max(gap, Math.max(right.maxGap, right.minStart - subtreeEnd));
+                subtreeEnd = Math.max(subtreeEnd, right.maxEnd);
+            }
+            minStart = left == null ? start : left.minStart;
+            maxEnd = subtreeEnd;
+            maxGap = gap;
+            // an item keeps its priority when it is moved
+            priority = EventTimes.priority(id);
+        }
+
+        public Node withChildren(Node newLeft, Node newRight) {
+            return new Node(item, end, newLeft, newRight);
+        }
+
+        /**
+         * Compares this node with the given key, the nodes are ordered by their start and then by their id.
+         */
+        public int compareTo(int otherStart, int otherId) {
+            if (start != otherStart) {
+                return start < otherStart ? -1 : 1;
+            }
+            return id < otherId ? -1 : (id == otherId ? 0 : 1);
+        }
+    }
+}
@@ -0,0 +1,322 @@
+// @formatter:off
+ /*******************************************************************************
+ *
+ * This file is part of JScheduleX.
+ * 
+ * Copyright (c) 2012 CERN.
+ *
+ * This software is distributed under the terms of the GNU Lesser General
+ * Public Licence version 3 (LGPL Version 3), copied verbatim in the file COPYING
+ * 
+ * In applying this licence, CERN does not waive the privileges and immunities
+ * granted to it by virtue of its status as an Intergovernmental Organization
+ * or submit itself to any jurisdiction.
+ * 
+ ******************************************************************************/
+// @formatter:on
+
+package cern.acctesting.service.schedule.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import cern.acctesting.service.schedule.ItemToSchedule;
+import cern.acctesting.service.schedule.Lane;
+
+/**
+ * Assigns every item of a plan a dense index between 0 and n - 1. The scheduler creates the index once when the scheduling starts, so the
+ * engine can keep all per-item state in plain arrays instead of looking it up in maps. The index is immutable and is shared by all clones
+ * of the plan it was created for.
+ * <p>
+ * The index also keeps the lanes, durations and required items of every item in primitive arrays. The lanes are numbered densely as well,
+ * so the lanes of an item are represented by a bit mask and a sorted array of lane numbers with the corresponding durations. Items with
+ * the same set of lanes share a lane signature.
+ * 
+ * @author Michael Galetzka
+ * 
+ */
+public class ItemIndex {
+
+    private final ItemToSchedule[] items;
+    private final IntIntMap indexes;
+    private final long[][] laneMasks;
+    private final int[][] laneNumbers;
+    private final int[][] laneDurations;
+    private final int[][] requiredItems;
+    private final int[][] dependentItems;
+    private final int[] laneSignatures;
+    private final int[][] signatureItems;
+
+    /**
+     * Creates a new index for the given items. The items are indexed in the order they are returned by the collection.
+     * 
+     * @param items
+     *            the items to index
+     */
+    public ItemIndex(Collection<ItemToSchedule> items) {
+        this.items = items.toArray(new ItemToSchedule[items.size()]);
+        indexes = new IntIntMap();
+        for (int i = 0; i < this.items.length; i++) {
+            if (indexes.containsKey(this.items[i].getId())) {
+                throw new IllegalArgumentException("The item " + this.items[i] + " is contained more than once.");
+            }
+            indexes.put(this.items[i].getId(), i);
+        }
+
+        laneMasks = new long[this.items.length][];
+        laneNumbers = new int[this.items.length][];
+        laneDurations = new int[this.items.length][];
+        requiredItems = new int[this.items.length][];
+        Map<Lane, Integer> lanes = new HashMap<Lane, Integer>();
+        for (int i = 0; i < this.items.length; i++) {
+            initializeLanes(i, lanes);
+            initializeRequiredItems(i);
+        }
+
+        dependentItems = invert(requiredItems);
+        laneSignatures = new int[this.items.length];
+        signatureItems = initializeSignatures();
+    }
+
+    /**
+     * @return for every index the indexes that refer to it in the given relation, in ascending order
+     */
+    private static int[][] invert(int[][] relation) {
+        int[] counts = new int[relation.length];
+        for (int[] related : relation) {
+            for (int index : related) {
+                counts[index]++;
+            }
+        }
+        int[][] inverted = new int[relation.length][];
+        for (int i = 0; i < relation.length; i++) {
+            inverted[i] = new int[counts[i]];
+            counts[i] = 0;
+        }
+        for (int i = 0; i < relation.length; i++) {
+            for (int index : relation[i]) {
+                inverted[index][counts[index]++] = i;
+            }
+        }
+        return inverted;
+    }
+
+    private int[][] initializeSignatures() {
+        Map<LaneSet, Integer> signatures = new HashMap<LaneSet, Integer>();
+        List<int[]> itemsOfSignatures = new ArrayList<int[]>();
+        int[] counts = new int[items.length];
+        for (int i = 0; i < items.length; i++) {
+            LaneSet laneSet = new LaneSet(laneNumbers[i]);
+            Integer signature = signatures.get(laneSet);
+            if (signature == null) {
+                signature = signatures.size();
+                signatures.put(laneSet, signature);
+            }
+            laneSignatures[i] = signature;
+            counts[signature]++;
+        }
+
+        for (int signature = 0; signature < signatures.size(); signature++) {
+            itemsOfSignatures.add(new int[counts[signature]]);
+            counts[signature] = 0;
+        }
+        for (int i = 0; i < items.length; i++) {
+            itemsOfSignatures.get(laneSignatures[i])[counts[laneSignatures[i]]++] = i;
+        }
+        return itemsOfSignatures.toArray(new int[itemsOfSignatures.size()][]);
+    }
+
+    private void initializeLanes(int index, Map<Lane, Integer> lanes) {
+        ItemToSchedule item = items[index];
+        Collection<Lane> affectedLanes = item.getAffectedLanes();
+        long[] numbersAndDurations = new long[affectedLanes.size()];
+        int maxNumber = 0;
+        int i = 0;
+        for (Lane lane : affectedLanes) {
+            Integer number = lanes.get(lane);
+            if (number == null) {
+                number = lanes.size();
+                lanes.put(lane, number);
+            }
+            maxNumber = Math.max(maxNumber, number);
+            // sorting the combined values sorts the lanes by their number
+            numbersAndDurations[i++] = ((long) number << 32) | item.getDuration(lane);
+        }
+        Arrays.sort(numbersAndDurations);
+
+        long[] mask = new long[(maxNumber >> 6) + 1];
+        int[] numbers = new int[numbersAndDurations.length];
+        int[] durations = new int[numbersAndDurations.length];
+        for (i = 0; i < numbersAndDurations.length; i++) {
+            numbers[i] = (int) (numbersAndDurations[i] >>> 32);
+            durations[i] = (int) numbersAndDurations[i];
+            mask[numbers[i] >> 6] |= 1L << numbers[i];
+        }
+        laneMasks[index] = mask;
+        laneNumbers[index] = numbers;
+        laneDurations[index] = durations;
+    }
+
+    private void initializeRequiredItems(int index) {
+        List<ItemToSchedule> required = items[index].getRequiredItems();
+        int[] result = new int[required.size()];
+        int count = 0;
+        for (ItemToSchedule requiredItem : required) {
+            int requiredIndex = indexes.get(requiredItem.getId(), -1);
+            // required items that are not part of the plan are ignored
+            if (requiredIndex >= 0) {
+                result[count++] = requiredIndex;
+            }
+        }
+        requiredItems[index] = Arrays.copyOf(result, count);
+    }
+
+    /**
+     * @return the number of indexed items
+     */
+    public int size() {
+        return items.length;
+    }
+
+    /**
+     * Returns the index of the given item.
+     * 
+     * @param item
+     *            the item to look up
+     * @return the index of the item or -1 if the item is not part of this index
+     */
+    public int indexOf(ItemToSchedule item) {
+        return indexes.get(item.getId(), -1);
+    }
+
+    /**
+     * @param index
+     *            the index of the item
+     * @return the item with the given index
+     */
+    public ItemToSchedule getItem(int index) {
+        return items[index];
+    }
+
+    /**
+     * @param item1
+     *            the index of the first item
+     * @param item2
+     *            the index of the second item
+     * @return {@code true} if the two items have at least one lane in common
+     */
+    public boolean sharesLanes(int item1, int item2) {
+        long[] mask1 = laneMasks[item1];
+        long[] mask2 = laneMasks[item2];
+        for (int i = Math.min(mask1.length, mask2.length) - 1; i >= 0; i--) {
+            if ((mask1[i] & mask2[i]) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param item
+     *            the index of the item
+     * @return the numbers of the lanes of the item in ascending order. The array must not be modified.
+     */
+    public int[] getLaneNumbers(int item) {
+        return laneNumbers[item];
+    }
+
+    /**
+     * @param item
+     *            the index of the item
+     * @return the durations of the item, in the same order as the lanes returned by {@link #getLaneNumbers(int)}. The array must not be
+     *         modified.
+     */
+    public int[] getLaneDurations(int item) {
+        return laneDurations[item];
+    }
+
+    /**
+     * @param item
+     *            the index of the item
+     * @param requiredItem
+     *            the index of the other item
+     * @return {@code true} if the item requires the other item
+     */
+    public boolean requires(int item, int requiredItem) {
+        for (int required : requiredItems[item]) {
+            if (required == requiredItem) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param item
+     *            the index of the item
+     * @return the indexes of the items required by the item. The array must not be modified.
+     */
+    public int[] getRequiredItems(int item) {
+        return requiredItems[item];
+    }
+
+    /**
+     * @param item
+     *            the index of the item
+     * @return the indexes of the items that require the item in ascending order. The array must not be modified.
+     */
+    public int[] getDependentItems(int item) {
+        return dependentItems[item];
+    }
+
+    /**
+     * @return the number of different sets of lanes used by the items
+     */
+    public int getSignatureCount() {
+        return signatureItems.length;
+    }
+
+    /**
+     * @param item
+     *            the index of the item
+     * @return the lane signature of the item, which is a number between 0 and {@link #getSignatureCount()} - 1. Items with the same
+     *         signature have the same set of lanes.
+     */
+    public int getLaneSignature(int item) {
+        return laneSignatures[item];
+    }
+
+    /**
+     * @param signature
+     *            the lane signature
+     * @return the indexes of all items with the given signature in ascending order. The array must not be modified.
+     */
+    public int[] getSignatureItems(int signature) {
+        return signatureItems[signature];
+    }
+
+    /**
+     * The lane numbers of an item as a key for hash maps.
+     */
+    private static class LaneSet {
+        private final int[] laneNumbers;
+
+        public LaneSet(int[] laneNumbers) {
+            this.laneNumbers = laneNumbers;
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(laneNumbers);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof LaneSet && Arrays.equals(laneNumbers, ((LaneSet) obj).laneNumbers);
+        }
+    }
+}
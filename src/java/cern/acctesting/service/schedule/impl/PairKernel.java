@@ -0,0 +1,122 @@
+// @formatter:off
+ /*******************************************************************************
+ *
+ * This file is part of JScheduleX.
+ * 
+ * Copyright (c) 2012 CERN.
+ *
+ * This software is distributed under the terms of the GNU Lesser General
+ * Public Licence version 3 (LGPL Version 3), copied verbatim in the file COPYING
+ * 
+ * In applying this licence, CERN does not waive the privileges and immunities
+ * granted to it by virtue of its status as an Intergovernmental Organization
+ * or submit itself to any jurisdiction.
+ * 
+ ******************************************************************************/
+// @formatter:on
+
+package cern.acctesting.service.schedule.impl;
+
+import java.util.Arrays;
+
+import cern.acctesting.service.schedule.ScheduleUtil;
+import cern.acctesting.service.schedule.constraint.impl.DependenciesConstraint;
+import cern.acctesting.service.schedule.constraint.impl.NoOverlappingConstraint;
+
+/**
+ * Checks the built-in pair constraints for one pair of items by only looking at primitive values that are prepared when the kernel is
+ * created. The results are the same as the ones of the corresponding constraints, but no lanes are copied, no collections are searched and
+ * no decision objects are created.
+ * 
+ * @author Michael Galetzka
+ * 
+ */
+public class PairKernel {
+
+    private final int[] sharedDurations1;
+    private final int[] sharedDurations2;
+    private final boolean firstRequiresSecond;
+    private final boolean secondRequiresFirst;
+    private final int maxDuration1;
+    private final int maxDuration2;
+    private final int dependencyValue;
+
+    /**
+     * Creates the kernel for the given pair of items.
+     * 
+     * @param itemIndex
+     *            the index containing the items
+     * @param item1
+     *            the index of the first item
+     * @param item2
+     *            the index of the second item
+     */
+    public PairKernel(ItemIndex itemIndex, int item1, int item2) {
+        int[] lanes1 = itemIndex.getLaneNumbers(item1);
+        int[] lanes2 = itemIndex.getLaneNumbers(item2);
+        int[] durations1 = itemIndex.getLaneDurations(item1);
+        int[] durations2 = itemIndex.getLaneDurations(item2);
+        int[] shared1 = new int[Math.min(lanes1.length, lanes2.length)];
+        int[] shared2 = new int[shared1.length];
+        int count = 0;
+        int i = 0;
+        int j = 0;
+        while (i < lanes1.length && j < lanes2.length) {
+            if (lanes1[i] < lanes2[j]) {
+                i++;
+            }
+            else if (lanes1[i] > lanes2[j]) {
+                j++;
+            }
+            else {
+                shared1[count] = durations1[i++];
+                shared2[count++] = durations2[j++];
+            }
+        }
+        sharedDurations1 = Arrays.copyOf(shared1, count);
+        sharedDurations2 = Arrays.copyOf(shared2, count);
+
+        firstRequiresSecond = itemIndex.requires(item1, item2);
+        secondRequiresFirst = itemIndex.requires(item2, item1);
+        maxDuration1 = itemIndex.getItem(item1).getMaxDuration();
+        maxDuration2 = itemIndex.getItem(item2).getMaxDuration();
+        dependencyValue = Math.max(itemIndex.getItem(item1).getDurationSummary(), itemIndex.getItem(item2).getDurationSummary());
+    }
+
+    /**
+     * Calculates the hard violation value of the {@link NoOverlappingConstraint} for the pair.
+     * 
+     * @param start1
+     *            the start of the first item
+     * @param start2
+     *            the start of the second item
+     * @return the violation value or 0 if the constraint is fulfilled
+     */
+    public int checkNoOverlapping(int start1, int start2) {
+        int overlappedValue = 0;
+        for (int i = 0; i < sharedDurations1.length; i++) {
+            overlappedValue += ScheduleUtil.getOverlappingValue(start1, start1 + sharedDurations1[i], start2, start2 + sharedDurations2[i]);
+        }
+        return overlappedValue;
+    }
+
+    /**
+     * Calculates the hard violation value of the {@link DependenciesConstraint} for the pair.
+     * 
+     * @param start1
+     *            the start of the first item
+     * @param start2
+     *            the start of the second item
+     * @return the violation value or 0 if the constraint is fulfilled
+     */
+    public int checkDependencies(int start1, int start2) {
+        int distanceToEnd = 0;
+        if (firstRequiresSecond) {
+            distanceToEnd = start1 - (start2 + maxDuration2);
+        }
+        else if (secondRequiresFirst) {
+            distanceToEnd = start2 - (start1 + maxDuration1);
+        }
+        return distanceToEnd < 0 ? dependencyValue : 0;
+    }
+}
@@ -0,0 +1,124 @@
+// @formatter:off
+ /*******************************************************************************
+ *
+ * This file is part of JScheduleX.
+ * 
+ * Copyright (c) 2012 CERN.
+ *
+ * This software is distributed under the terms of the GNU Lesser General
+ * Public Licence version 3 (LGPL Version 3), copied verbatim in the file COPYING
+ * 
+ * In applying this licence, CERN does not waive the privileges and immunities
+ * granted to it by virtue of its status as an Intergovernmental Organization
+ * or submit itself to any jurisdiction.
+ * 
+ ******************************************************************************/
+// @formatter:on
+
+package cern.acctesting.service.schedule.impl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import cern.acctesting.service.schedule.ScheduledItem;
+
+/**
+ * The changes between an old and a new {@link SchedulePlan}, as created by {@link SchedulePlan#diff(SchedulePlan)}. An item is added if
+ * it is only scheduled in the new plan, removed if it is only scheduled in the old plan and moved if it has a different start in the two
+ * plans. The items are listed in the order of their position in the plans.
+ * 
+ * @author Michael Galetzka
+ * 
+ */
+public class PlanDiff {
+
+    private final List<ScheduledItem> addedItems = new ArrayList<ScheduledItem>();
+    private final List<ScheduledItem> removedItems = new ArrayList<ScheduledItem>();
+    private final List<Move> movedItems = new ArrayList<Move>();
+
+    void addAddedItem(ScheduledItem newItem) {
+        addedItems.add(newItem);
+    }
+
+    void addRemovedItem(ScheduledItem oldItem) {
+        removedItems.add(oldItem);
+    }
+
+    void addMovedItem(ScheduledItem oldItem, ScheduledItem newItem) {
+        movedItems.add(new Move(oldItem, newItem));
+    }
+
+    /**
+     * @return the items that are only scheduled in the new plan
+     */
+    public List<ScheduledItem> getAddedItems() {
+        return Collections.unmodifiableList(addedItems);
+    }
+
+    /**
+     * @return the items that are only scheduled in the old plan
+     */
+    public List<ScheduledItem> getRemovedItems() {
+        return Collections.unmodifiableList(removedItems);
+    }
+
+    /**
+     * @return the items that are scheduled in both plans, but start at different times
+     */
+    public List<Move> getMovedItems() {
+        return Collections.unmodifiableList(movedItems);
+    }
+
+    /**
+     * @return {@code true} if the two plans schedule the same items at the same starts
+     */
+    public boolean isEmpty() {
+        return addedItems.isEmpty() && removedItems.isEmpty() && movedItems.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return "Plan diff: added " + addedItems + ", removed " + removedItems + ", moved " + movedItems;
+    }
+
+    /**
+     * An item that has been moved to another start.
+     */
+    public static class Move {
+        private final ScheduledItem oldItem;
+        private final ScheduledItem newItem;
+
+        public Move(ScheduledItem oldItem, ScheduledItem newItem) {
+            this.oldItem = oldItem;
+            this.newItem = newItem;
+        }
+
+        /**
+         * @return the item as it is scheduled in the old plan
+         */
+        public ScheduledItem getOldItem() {
+            return oldItem;
+        }
+
+        /**
+         * @return the item as it is scheduled in the new plan
+         */
+        public ScheduledItem getNewItem() {
+            return newItem;
+        }
+
+        public int getOldStart() {
+            return oldItem.getStart();
+        }
+
+        public int getNewStart() {
+            return newItem.getStart();
+        }
+
+        @Override
+        public String toString() {
+            return oldItem.getItemToSchedule().getId() + ": " + oldItem.getStart() + " -> " + newItem.getStart();
+        }
+    }
+}
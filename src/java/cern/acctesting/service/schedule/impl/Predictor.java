@@ -19,13 +19,9 @@ package cern.acctesting.service.schedule.impl;
 
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
-import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
 import java.util.concurrent.ConcurrentHashMap;
@@ -38,52 +34,78 @@ import cern.acctesting.service.schedule.ItemToSchedule;
 import cern.acctesting.service.schedule.ScheduledItem;
 import cern.acctesting.service.schedule.constraint.ConstraintPrediction;
 import cern.acctesting.service.schedule.constraint.ConstraintPrediction.Prediction;
-import cern.acctesting.service.schedule.constraint.ItemPairConstraint;
 import cern.acctesting.service.schedule.impl.ViolationsManager.ConstraintPartner;
+import cern.acctesting.service.schedule.impl.ViolationsManager.ManagedPairConstraint;
 
 public class Predictor {
-    private final Map<ItemToSchedule, Set<ConstraintPartner>> constraintMap;
-    private final Map<ItemToSchedule, PredictionData> predictionMap;
+    private final PredictionData[] predictionData;
     private final BlockStore blockStore;
     private final ForkJoinPool executor;
     
     private SchedulePlan plan;
 
-    public Predictor(SchedulePlan plan, Map<ItemToSchedule, Set<ConstraintPartner>> constraintMap) {
+    /**
+     * Creates the predictor for the items of the given plan.
+     * 
+     * @param plan
+     *            the plan the items are scheduled in. Its items must be indexed.
+     * @param constraintPartners
+     *            the partners of the items, indexed by the item index of the plan
+     */
+    public Predictor(SchedulePlan plan, ConstraintPartner[][] constraintPartners) {
         this.plan = plan;
-        this.constraintMap = constraintMap;
-        predictionMap = new HashMap<ItemToSchedule, PredictionData>(constraintMap.size());
+        predictionData = new PredictionData[constraintPartners.length];
         blockStore = new BlockStore();
         executor = new ForkJoinPool();
 
-        initializePredictionMap();
+        initializePredictionData(constraintPartners);
     }
 
-    private void initializePredictionMap() {
-        for (Entry<ItemToSchedule, Set<ConstraintPartner>> entry : constraintMap.entrySet()) {
-            Map<ItemToSchedule, PredictionBlocks> predictionBlocks = new HashMap<ItemToSchedule, PredictionBlocks>(entry.getValue().size());
+    private void initializePredictionData(ConstraintPartner[][] constraintPartners) {
+        ItemIndex itemIndex = plan.getItemIndex();
+        for (int i = 0; i < constraintPartners.length; i++) {
+            ItemToSchedule item = itemIndex.getItem(i);
+            PredictionData data = new PredictionData(constraintPartners[i].length);
             PredictionBlocks blocks;
-            for (ConstraintPartner partner : entry.getValue()) {
+            for (ConstraintPartner partner : constraintPartners[i]) {
                 blocks = null;
-                for (ItemPairConstraint constraint : partner.getConstraints()) {
-                    ConstraintPrediction decision = constraint.predictDecision(entry.getKey(), partner.getPartnerItem());
-                    PredictionBlocks newBlocks = createBlocksFromDecision(entry.getKey(), partner.getPartnerItem(), decision);
+                for (ManagedPairConstraint constraint : partner.getConstraints()) {
+                    ConstraintPrediction decision = constraint.getConstraint().predictDecision(item, partner.getPartnerItem());
+                    PredictionBlocks newBlocks = createBlocksFromDecision(item, partner.getPartnerItem(), decision);
                     if (blocks == null) {
                         blocks = newBlocks;
                     } else {
                         blocks = blocks.aggregate(newBlocks, Method.MERGE_MAX);
                     }
                 }
-                predictionBlocks.put(partner.getPartnerItem(), blocks);
+                // the partners are stored by their slot, so the data does not depend on the current order of the partners
+                data.partnerIndexes[partner.getSlot()] = partner.getPartnerIndex();
+                data.partnerSlots[partner.getSlot()] = partner.getPartnerSlot();
+                data.predictionBlocks[partner.getSlot()] = blocks;
             }
-            predictionMap.put(entry.getKey(), new PredictionData(predictionBlocks));
+            predictionData[i] = data;
         }
     }
 
-    public void itemWasMoved(ItemToSchedule movedItem) {
-        for (ConstraintPartner partner : constraintMap.get(movedItem)) {
-            final ItemToSchedule partnerItem = partner.getPartnerItem();
-            predictionMap.get(partnerItem).flaggedDirty.add(movedItem);
+    /**
+     * @return the number of prediction blocks kept for all pairs of items, not counting the aggregated blocks
+     */
+    public int getBlockCount() {
+        int count = 0;
+        for (PredictionData data : predictionData) {
+            for (PredictionBlocks blocks : data.predictionBlocks) {
+                if (blocks != null) {
+                    count += blocks.getBlockCount();
+                }
+            }
+        }
+        return count;
+    }
+
+    public void itemWasMoved(int movedItem) {
+        PredictionData data = predictionData[movedItem];
+        for (int slot = 0; slot < data.partnerIndexes.length; slot++) {
+            predictionData[data.partnerIndexes[slot]].flagDirty(data.partnerSlots[slot]);
         }
     }
 
@@ -194,8 +216,19 @@ public class Predictor {
         return new PredictionBlocks(beforeBlock, middleBlocks, blockStore.getAfterBlock(0, 0, 0));
     }
 
-    public ConflictPrediction predictConflicts(ScheduledItem item) {
-        PredictionData data = predictionMap.get(item.getItemToSchedule());
+    /**
+     * Brings the prediction data of the item up to date, so following predictions for the item do not change the predictor as long as no
+     * other item is moved.
+     * 
+     * @param itemIndex
+     *            the index of the item
+     */
+    public void prepare(int itemIndex) {
+        predictionData[itemIndex].updateAggregation();
+    }
+
+    public ConflictPrediction predictConflicts(ScheduledItem item, int itemIndex) {
+        PredictionData data = predictionData[itemIndex];
         Block predictedBlock = data.getBlockForTime(item.getStart());
         return new ConflictPrediction(predictedBlock.getValues());
     }
@@ -216,58 +249,88 @@ public class Predictor {
         }
     }
 
+    /**
+     * The prediction data of a single item. The blocks of the partners are stored by the slot of the partner.
+     */
     private class PredictionData {
-        private Set<ItemToSchedule> flaggedDirty;
-        private Map<ItemToSchedule, PredictionBlocks> predictionBlocks;
+        private final int[] partnerIndexes;
+        private final int[] partnerSlots;
+        private final PredictionBlocks[] predictionBlocks;
+        private final boolean[] flaggedDirty;
+        private final int[] dirtySlots;
+        private int dirtyCount;
         private PredictionBlocks aggregated;
 
-        public PredictionData(Map<ItemToSchedule, PredictionBlocks> predictionBlocks) {
-            this.predictionBlocks = predictionBlocks;
-            flaggedDirty = new HashSet<ItemToSchedule>();
+        public PredictionData(int partnerCount) {
+            partnerIndexes = new int[partnerCount];
+            partnerSlots = new int[partnerCount];
+            predictionBlocks = new PredictionBlocks[partnerCount];
+            flaggedDirty = new boolean[partnerCount];
+            dirtySlots = new int[partnerCount];
+            dirtyCount = 0;
             aggregated = null;
         }
 
+        public void flagDirty(int slot) {
+            if (!flaggedDirty[slot]) {
+                flaggedDirty[slot] = true;
+                dirtySlots[dirtyCount++] = slot;
+            }
+        }
+
+        private void clearDirtyFlags() {
+            for (int i = 0; i < dirtyCount; i++) {
+                flaggedDirty[dirtySlots[i]] = false;
+            }
+            dirtyCount = 0;
+        }
+
         public Block getBlockForTime(int start) {
+            updateAggregation();
+            return aggregated.getBlockForTime(start);
+        }
+
+        public void updateAggregation() {
             if (aggregated == null) {
                 createAggregationBlock();
-            } else if (!flaggedDirty.isEmpty()) {
-                if (flaggedDirty.size() < (predictionBlocks.size() / 2)) {
+            } else if (dirtyCount > 0) {
+                if (dirtyCount < (predictionBlocks.length / 2)) {
                     updateAggregationBlock();
                 } else {
                     createAggregationBlock();
                 }
             }
-            return aggregated.getBlockForTime(start);
         }
 
         private void updateAggregationBlock() {
             // subtract the old dirty flagged blocks
-            List<PredictionBlocks> blocksToAggregate = new ArrayList<PredictionBlocks>(flaggedDirty.size());
-            for (ItemToSchedule item : flaggedDirty) {
-                blocksToAggregate.add(predictionBlocks.get(item));
+            List<PredictionBlocks> blocksToAggregate = new ArrayList<PredictionBlocks>(dirtyCount);
+            for (int i = 0; i < dirtyCount; i++) {
+                blocksToAggregate.add(predictionBlocks[dirtySlots[i]]);
             }
             aggregated = aggregated.aggregate(blocksToAggregate, Method.SUBTRACT);
 
             // update them and then add them to the aggregate again
             blocksToAggregate.clear();
-            for (ItemToSchedule item : flaggedDirty) {
-                int itemStart = plan.getScheduledItem(item).getStart();
-                PredictionBlocks itemBlocks = predictionBlocks.get(item);
+            for (int i = 0; i < dirtyCount; i++) {
+                int slot = dirtySlots[i];
+                int itemStart = plan.getScheduledItem(partnerIndexes[slot]).getStart();
+                PredictionBlocks itemBlocks = predictionBlocks[slot];
                 itemBlocks.setStartPosition(itemStart);
                 blocksToAggregate.add(itemBlocks);
             }
             aggregated = aggregated.aggregate(blocksToAggregate, Method.ADD);
-            flaggedDirty.clear();
+            clearDirtyFlags();
         }
 
         private void createAggregationBlock() {
-            flaggedDirty.clear();
+            clearDirtyFlags();
             aggregated = new PredictionBlocks(blockStore.getBeforeBlock(0, 0, -1), Collections.<MiddleBlock> emptyList(),
                     blockStore.getAfterBlock(0, 0, 0), 0);
-            List<PredictionBlocks> blocksToAggregate = new ArrayList<PredictionBlocks>();
-            for (Entry<ItemToSchedule, PredictionBlocks> entry : predictionBlocks.entrySet()) {
-                int itemStart = plan.getScheduledItem(entry.getKey()).getStart();
-                PredictionBlocks itemBlocks = entry.getValue();
+            List<PredictionBlocks> blocksToAggregate = new ArrayList<PredictionBlocks>(predictionBlocks.length);
+            for (int slot = 0; slot < predictionBlocks.length; slot++) {
+                int itemStart = plan.getScheduledItem(partnerIndexes[slot]).getStart();
+                PredictionBlocks itemBlocks = predictionBlocks[slot];
                 itemBlocks.setStartPosition(itemStart);
                 blocksToAggregate.add(itemBlocks);
             }
@@ -293,6 +356,10 @@ public class Predictor {
             setStartPosition(startPosition);
         }
 
+        public int getBlockCount() {
+            return middleBlocks.size() + 2;
+        }
+
         public PredictionBlocks aggregate(PredictionBlocks blockToAggregate, Method method) {
             return aggregate(Collections.singletonList(blockToAggregate), method);
         }
@@ -628,11 +695,10 @@ public class Predictor {
         }
     }
 
-    public void planHasBeenUpdated(SchedulePlan oldPlan, SchedulePlan newPlan) {
-        //TODO: improve the update
+    public void planHasBeenUpdated(SchedulePlan newPlan, int[] movedItems) {
         plan = newPlan;
-        for (ScheduledItem item : newPlan.getScheduledItems()) {
-            itemWasMoved(item.getItemToSchedule());
+        for (int item : movedItems) {
+            itemWasMoved(item);
         }
     }
 }
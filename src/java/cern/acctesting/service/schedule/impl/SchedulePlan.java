@@ -18,14 +18,15 @@
 package cern.acctesting.service.schedule.impl;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
+import java.util.NoSuchElementException;
 import java.util.PriorityQueue;
-import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
 
@@ -34,47 +35,145 @@ import cern.acctesting.service.schedule.Lane;
 import cern.acctesting.service.schedule.ScheduledItem;
 
 public class SchedulePlan implements Cloneable {
-    private final Map<Integer, ScheduledItem> scheduledItems;
-    private final Map<Integer, Integer> startValues;
+
+    /**
+     * The scheduled items by their position in the plan. Every item gets a position when it is added for the first time, unscheduled items
+     * leave a {@code null} at their position. The positions are kept in a primitive map until {@link #indexItems()} is called, afterwards
+     * the position of an item is its index.
+     * <p>
+     * The array is shared with the clones of the plan and a change only copies the chunk of the changed item, so the plan can be cloned in
+     * constant time.
+     */
+    private ChunkedArray<ScheduledItem> scheduledItems;
+    private IntIntMap positions;
+
+    /**
+     * The start and end values of the items in ascending order, together with the number of times each value is used. The index is kept up
+     * to date with every change, so the start values can be iterated without sorting them.
+     */
+    private final EventTimes startValues;
     private int makespan = 0;
-    private final Map<ItemToSchedule, Collection<ItemToSchedule>> dependentItems;
-    private final Set<ScheduledItem> fixedItems;
+
+    /**
+     * The intervals occupied by the items on every lane. The interval indexes are immutable, the map is shared with the clones of the plan
+     * and copied before it is changed.
+     */
+    private Map<Lane, IntervalIndex> laneIntervals;
+    private boolean sharingLanes;
+
+    /**
+     * The positions, dependent items and fixed items rarely change after the plan has been created. They are shared with the clones of
+     * the plan and only copied when one of the plans changes them. The dependent items are only kept until the items are indexed, the
+     * item index knows them afterwards. The fixed items are marked by their position.
+     */
+    private Map<ItemToSchedule, Collection<ItemToSchedule>> dependentItems;
+    private BitSet fixedItems;
+    private boolean sharingCollections;
+
+    /**
+     * The dense index of the items, which is {@code null} until {@link #indexItems()} is called.
+     */
+    private ItemIndex itemIndex;
+
+    /**
+     * The undo log of the open transaction, which contains the scheduled item every tentatively moved item had when the transaction was
+     * begun. The log is {@code null} if no transaction is open. The entries are found by the position of their item.
+     */
+    private List<UndoEntry> undoLog;
+    private IntIntMap undoEntries;
 
     public SchedulePlan() {
-        scheduledItems = new HashMap<Integer, ScheduledItem>();
-        startValues = new HashMap<Integer, Integer>();
+        scheduledItems = new ChunkedArray<ScheduledItem>();
+        positions = new IntIntMap();
+        startValues = new EventTimes();
+        laneIntervals = new HashMap<Lane, IntervalIndex>();
         dependentItems = new HashMap<ItemToSchedule, Collection<ItemToSchedule>>();
-        fixedItems = new HashSet<ScheduledItem>();
+        fixedItems = new BitSet();
     }
 
-    private SchedulePlan(Map<Integer, ScheduledItem> scheduledItems, Map<Integer, Integer> startValues,
-            Map<ItemToSchedule, Collection<ItemToSchedule>> dependentItems, Set<ScheduledItem> fixedItems) {
-        this.scheduledItems = new HashMap<Integer, ScheduledItem>(scheduledItems);
-        this.startValues = new HashMap<Integer, Integer>(startValues);
-        this.dependentItems = new HashMap<ItemToSchedule, Collection<ItemToSchedule>>(dependentItems);
-        this.fixedItems = new HashSet<ScheduledItem>(fixedItems);
+    /**
+     * Creates a copy of the given plan in constant time. Both plans share their data until one of them is changed.
+     */
+    private SchedulePlan(SchedulePlan plan) {
+        scheduledItems = new ChunkedArray<ScheduledItem>(plan.scheduledItems);
+        positions = plan.positions;
+        startValues = new EventTimes(plan.startValues);
+        makespan = plan.makespan;
+        laneIntervals = plan.laneIntervals;
+        sharingLanes = true;
+        plan.sharingLanes = true;
+        dependentItems = plan.dependentItems;
+        fixedItems = plan.fixedItems;
+        itemIndex = plan.itemIndex;
+        sharingCollections = true;
+        plan.sharingCollections = true;
+    }
 
-        makespan = 0;
-        for (Integer newEnd : startValues.keySet()) {
-            if (newEnd > makespan) {
-                makespan = newEnd;
+    /**
+     * Copies the collections that are shared with other plans, so they can be changed.
+     */
+    private void ownCollections() {
+        if (sharingCollections) {
+            positions = positions == null ? null : new IntIntMap(positions);
+            if (dependentItems != null) {
+                Map<ItemToSchedule, Collection<ItemToSchedule>> newDependentItems = new HashMap<ItemToSchedule, Collection<ItemToSchedule>>();
+                for (Map.Entry<ItemToSchedule, Collection<ItemToSchedule>> entry : dependentItems.entrySet()) {
+                    newDependentItems.put(entry.getKey(), new HashSet<ItemToSchedule>(entry.getValue()));
+                }
+                dependentItems = newDependentItems;
             }
+            fixedItems = (BitSet) fixedItems.clone();
+            sharingCollections = false;
         }
     }
 
     public List<ScheduledItem> getScheduledItems() {
-        return new ArrayList<ScheduledItem>(scheduledItems.values());
+        List<ScheduledItem> result = new ArrayList<ScheduledItem>(scheduledItems.size());
+        for (int i = 0; i < scheduledItems.size(); i++) {
+            ScheduledItem scheduledItem = scheduledItems.get(i);
+            if (scheduledItem != null) {
+                result.add(scheduledItem);
+            }
+        }
+        return result;
     }
     
     public List<ScheduledItem> getFixedItems() {
-        return new ArrayList<ScheduledItem>(fixedItems);
+        List<ScheduledItem> result = new ArrayList<ScheduledItem>(fixedItems.cardinality());
+        for (int i = fixedItems.nextSetBit(0); i >= 0; i = fixedItems.nextSetBit(i + 1)) {
+            result.add(scheduledItems.get(i));
+        }
+        return result;
     }
 
     public ScheduledItem add(ItemToSchedule itemToSchedule, int start) {
-        if (scheduledItems.containsKey(itemToSchedule.getId())) {
+        checkNoTransaction();
+        if (getScheduledItem(itemToSchedule) != null) {
             throw new IllegalArgumentException("The plan already contains this item: " + itemToSchedule);
         }
+        if (itemIndex != null && itemIndex.indexOf(itemToSchedule) < 0) {
+            dropItemIndex();
+        }
         
+        // the dependencies of indexed items are known by the index
+        if (itemIndex == null) {
+            ownCollections();
+            addDependentItem(itemToSchedule);
+        }
+
+        for (Lane lane : itemToSchedule.getAffectedLanes()) {
+            if (start + itemToSchedule.getDuration(lane) > makespan) {
+                makespan = start + itemToSchedule.getDuration(lane);
+            }
+        }
+
+        ScheduledItem scheduledItem = new ScheduledItem(itemToSchedule, start);
+        storeItem(itemToSchedule, scheduledItem);
+        addToIndexes(scheduledItem);
+        return scheduledItem;
+    }
+
+    private void addDependentItem(ItemToSchedule itemToSchedule) {
         for (ItemToSchedule required : itemToSchedule.getRequiredItems()) {
             Collection<ItemToSchedule> items = dependentItems.get(required);
             if (items == null) {
@@ -83,181 +182,666 @@ public class SchedulePlan implements Cloneable {
             items.add(itemToSchedule);
             dependentItems.put(required, items);
         }
+    }
 
-        for (Lane lane : itemToSchedule.getAffectedLanes()) {
-            if (start + itemToSchedule.getDuration(lane) > makespan) {
-                makespan = start + itemToSchedule.getDuration(lane);
+    /**
+     * Forgets the item index of this plan, so an item that is not part of the index can be added. The items keep their positions and the
+     * clones of the plan keep the index.
+     */
+    private void dropItemIndex() {
+        ownCollections();
+        positions = new IntIntMap();
+        dependentItems = new HashMap<ItemToSchedule, Collection<ItemToSchedule>>();
+        for (int i = 0; i < itemIndex.size(); i++) {
+            ItemToSchedule item = itemIndex.getItem(i);
+            positions.put(item.getId(), i);
+            addDependentItem(item);
+        }
+        itemIndex = null;
+    }
+
+    /**
+     * Assigns every item of the plan a dense index between 0 and n - 1, so the item can be retrieved by {@link #getScheduledItem(int)}. The
+     * index is shared by all clones of this plan. Adding an item that is not part of the index drops the index of this plan again.
+     * 
+     * @return the new index of the items
+     */
+    public ItemIndex indexItems() {
+        checkNoTransaction();
+        List<ItemToSchedule> itemsToSchedule = new ArrayList<ItemToSchedule>(scheduledItems.size());
+        ChunkedArray<ScheduledItem> indexedItems = new ChunkedArray<ScheduledItem>();
+        BitSet indexedFixedItems = new BitSet();
+        // unscheduled items are dropped, so the fixed items get the positions of their new index
+        for (int i = 0; i < scheduledItems.size(); i++) {
+            ScheduledItem scheduledItem = scheduledItems.get(i);
+            if (scheduledItem != null) {
+                itemsToSchedule.add(scheduledItem.getItemToSchedule());
+                int index = indexedItems.add(scheduledItem);
+                indexedFixedItems.set(index, fixedItems.get(i));
             }
         }
+        scheduledItems = indexedItems;
+        fixedItems = indexedFixedItems;
+        itemIndex = new ItemIndex(itemsToSchedule);
+        positions = null;
+        dependentItems = null;
+        return itemIndex;
+    }
 
-        ScheduledItem scheduledItem = new ScheduledItem(itemToSchedule, start);
-        scheduledItems.put(scheduledItem.getItemToSchedule().getId(), scheduledItem);
-        addToStartValues(scheduledItem);
-        return scheduledItem;
+    /**
+     * @return the index of the items of this plan or {@code null} if the items have not been indexed yet
+     */
+    public ItemIndex getItemIndex() {
+        return itemIndex;
+    }
+
+    /**
+     * Returns the scheduled item with the given index.
+     * 
+     * @param index
+     *            the index of the item, as defined by {@link #getItemIndex()}
+     * @return the scheduled item or {@code null} if the item is currently not scheduled
+     */
+    public ScheduledItem getScheduledItem(int index) {
+        return scheduledItems.get(index);
+    }
+
+    private int getPosition(ItemToSchedule item) {
+        return itemIndex != null ? itemIndex.indexOf(item) : positions.get(item.getId(), -1);
+    }
+
+    /**
+     * Stores the scheduled item at the position of the item, the item gets a new position if it has none yet.
+     */
+    private void storeItem(ItemToSchedule itemToSchedule, ScheduledItem scheduledItem) {
+        int position = getPosition(itemToSchedule);
+        if (position >= 0) {
+            scheduledItems.set(position, scheduledItem);
+        }
+        else {
+            if (itemIndex != null) {
+                dropItemIndex();
+            }
+            ownCollections();
+            positions.put(itemToSchedule.getId(), scheduledItems.add(scheduledItem));
+        }
     }
 
     public void fixateItem(ScheduledItem itemToFixate) {
-        if (!scheduledItems.values().contains(itemToFixate)) {
-            throw new IllegalArgumentException("The plan does not contain this scheduled item (start value error): " + itemToFixate);
+        int position = getScheduledPosition(itemToFixate);
+        ownCollections();
+        fixedItems.set(position);
+    }
+
+    /**
+     * Fixates all of the given items, so they can not be moved or unscheduled anymore. Either all of the items are fixated or, if one of
+     * them is not part of the plan, none of them.
+     * 
+     * @param itemsToFixate
+     *            the scheduled items of this plan to fixate
+     */
+    public void fixateAll(Collection<ScheduledItem> itemsToFixate) {
+        int[] itemPositions = new int[itemsToFixate.size()];
+        int i = 0;
+        for (ScheduledItem itemToFixate : itemsToFixate) {
+            itemPositions[i++] = getScheduledPosition(itemToFixate);
+        }
+        ownCollections();
+        for (int position : itemPositions) {
+            fixedItems.set(position);
+        }
+    }
+
+    private int getScheduledPosition(ScheduledItem scheduledItem) {
+        int position = getPosition(scheduledItem.getItemToSchedule());
+        if (position < 0 || scheduledItems.get(position) == null) {
+            throw new IllegalArgumentException("The plan does not contain this scheduled item (start value error): " + scheduledItem);
         }
-        fixedItems.add(itemToFixate);
+        return position;
     }
 
     public boolean canBeMoved(ScheduledItem itemToMove) {
-        return !fixedItems.contains(itemToMove);
+        return !isFixed(itemToMove.getItemToSchedule());
     }
 
-    private void addToStartValues(ScheduledItem itemToAdd) {
-        int start = itemToAdd.getStart();
-        Integer count = startValues.get(start);
-        count = (count == null) ? 1 : (count + 1);
-        startValues.put(start, count);
+    private boolean isFixed(ItemToSchedule item) {
+        int position = getPosition(item);
+        return position >= 0 && fixedItems.get(position);
+    }
 
+    private void addToIndexes(ScheduledItem itemToAdd) {
+        ownLanes();
+        startValues.add(itemToAdd.getStart());
         for (Lane lane : itemToAdd.getItemToSchedule().getAffectedLanes()) {
-            int end = itemToAdd.getEnd(lane);
-            count = startValues.get(end);
-            count = (count == null) ? 1 : (count + 1);
-            startValues.put(end, count);
+            startValues.add(itemToAdd.getEnd(lane));
+            addInterval(lane, itemToAdd);
         }
     }
 
-    private void removeFromStartValues(ScheduledItem itemToRemove) {
+    private void addInterval(Lane lane, ScheduledItem item) {
+        IntervalIndex intervals = laneIntervals.get(lane);
+        laneIntervals.put(lane, (intervals == null ? IntervalIndex.EMPTY : intervals).add(item, item.getEnd(lane)));
+    }
+
+    private void removeFromIndexes(ScheduledItem itemToRemove) {
         decreaseStartValue(itemToRemove, itemToRemove.getStart());
         for (Lane lane : itemToRemove.getItemToSchedule().getAffectedLanes()) {
             decreaseStartValue(itemToRemove, itemToRemove.getEnd(lane));
         }
+        ownLanes();
+        for (Lane lane : itemToRemove.getItemToSchedule().getAffectedLanes()) {
+            laneIntervals.put(lane, laneIntervals.get(lane).remove(itemToRemove));
+        }
+    }
+
+    /**
+     * Copies the lane map if it is shared with other plans. The interval indexes themselves are immutable and stay shared.
+     */
+    private void ownLanes() {
+        if (sharingLanes) {
+            laneIntervals = new HashMap<Lane, IntervalIndex>(laneIntervals);
+            sharingLanes = false;
+        }
+    }
+
+    /**
+     * Returns the items that occupy the lane during the given range.
+     * 
+     * @param lane
+     *            the lane
+     * @param from
+     *            the start of the range
+     * @param to
+     *            the end of the range, it is not part of the range
+     * @return the items whose duration on the lane overlaps the range, ordered by their start
+     */
+    public List<ScheduledItem> getOverlappingItems(Lane lane, int from, int to) {
+        IntervalIndex intervals = laneIntervals.get(lane);
+        return intervals == null ? new ArrayList<ScheduledItem>() : intervals.getOverlapping(from, to);
+    }
+
+    /**
+     * Finds the earliest start at or after the given time at which the item does not overlap any other item on its lanes. The item itself
+     * is ignored if it is scheduled.
+     * 
+     * @param item
+     *            the item to place
+     * @param time
+     *            the earliest allowed start
+     * @return the earliest free start
+     */
+    public int getFreeStart(ItemToSchedule item, int time) {
+        ScheduledItem scheduledItem = getCommittedItem(item);
+        int start = time;
+        boolean moved = true;
+        // every lane can only move the start further back, so the search ends when no lane moves it anymore
+        while (moved) {
+            moved = false;
+            for (Lane lane : item.getAffectedLanes()) {
+                IntervalIndex intervals = laneIntervals.get(lane);
+                if (intervals == null) {
+                    continue;
+                }
+                if (scheduledItem != null) {
+                    intervals = intervals.remove(scheduledItem);
+                }
+                int freeStart = intervals.getFreeStart(start, item.getDuration(lane));
+                if (freeStart > start) {
+                    start = freeStart;
+                    moved = true;
+                }
+            }
+        }
+        return start;
+    }
+
+    /**
+     * @param lane
+     *            the lane
+     * @param time
+     *            the time to start from
+     * @return the first item on the lane that starts at or after the given time or {@code null} if there is none
+     */
+    public ScheduledItem getNextItem(Lane lane, int time) {
+        IntervalIndex intervals = laneIntervals.get(lane);
+        return intervals == null ? null : intervals.getNext(time);
+    }
+
+    /**
+     * @param lane
+     *            the lane
+     * @param time
+     *            the time to start from
+     * @return the last item on the lane that starts before the given time or {@code null} if there is none
+     */
+    public ScheduledItem getPreviousItem(Lane lane, int time) {
+        IntervalIndex intervals = laneIntervals.get(lane);
+        return intervals == null ? null : intervals.getPrevious(time);
     }
 
     private void decreaseStartValue(ScheduledItem item, int startValue) {
-        Integer count;
-        count = startValues.get(startValue);
-        if (count == null || count == 0) {
+        if (!startValues.remove(startValue)) {
             throw new IllegalArgumentException("The plan does not contain this scheduled item (start value error): " + item);
         }
-        count--;
-        if (count == 0) {
-            startValues.remove(startValue);
-        } else {
-            startValues.put(startValue, count);
-        }
     }
 
+    /**
+     * @return a sorted copy of the values returned by {@link #getStartValues()}
+     */
     public SortedSet<Integer> getExistingStartValues() {
-        SortedSet<Integer> start = new TreeSet<Integer>(startValues.keySet());
-        start.add(0);
+        SortedSet<Integer> start = new TreeSet<Integer>();
+        for (int value : getStartValues()) {
+            start.add(value);
+        }
         return start;
     }
 
+    /**
+     * Returns the values at which the items of the plan start or end on one of their lanes, together with 0, in ascending order. The values
+     * are not copied, every iterator walks the index of the plan as it was when the iterator was created. The plan can therefore be
+     * changed while iterating.
+     * 
+     * @return the start values of the plan
+     */
+    public Iterable<Integer> getStartValues() {
+        return getStartValues(Integer.MIN_VALUE, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Returns the values of {@link #getStartValues()} within the given range.
+     * 
+     * @param from
+     *            the lowest value to return
+     * @param to
+     *            the value to stop at, it is not returned
+     * @return the start values of the plan within the range
+     */
+    public Iterable<Integer> getStartValues(final int from, final int to) {
+        return new Iterable<Integer>() {
+            @Override
+            public Iterator<Integer> iterator() {
+                boolean addingZero = from <= 0 && 0 < to && startValues.count(0) == 0;
+                return new StartValueIterator(startValues.iterator(from, to), addingZero);
+            }
+        };
+    }
+
+    /**
+     * Creates a copy of the plan in constant time. The copy shares its data with this plan, a change of one of the plans only copies the
+     * parts it changes.
+     */
     @Override
     protected SchedulePlan clone() {
-        return new SchedulePlan(scheduledItems, startValues, dependentItems, fixedItems);
+        checkNoTransaction();
+        return new SchedulePlan(this);
     }
 
     public ScheduledItem moveScheduledItem(ItemToSchedule itemToMove, int newStart) {
-        final int itemId = itemToMove.getId();
-        ScheduledItem oldItem = scheduledItems.get(itemId);
+        checkNoTransaction();
+        ScheduledItem oldItem = getScheduledItem(itemToMove);
         if (oldItem == null) {
             throw new IllegalArgumentException("The plan does not contain this scheduled item!");
-        } else if (fixedItems.contains(oldItem)) {
+        } else if (isFixed(itemToMove)) {
             throw new IllegalArgumentException("The item " + oldItem + " has been fixated and must not be moved!");
         }
         ScheduledItem newItem = oldItem.changeStart(newStart);
 
         // update start values
-        removeFromStartValues(oldItem);
-        addToStartValues(newItem);
+        removeFromIndexes(oldItem);
+        addToIndexes(newItem);
 
         // update item collection
-        scheduledItems.put(itemId, newItem);
+        storeItem(itemToMove, newItem);
 
         updateMakespan();
 
         return newItem;
     }
 
+    /**
+     * Compares this plan with a newer version of it. The items are compared by their position in the two plans. The positions shared by
+     * the plans are skipped in chunks, so comparing a plan with one of its clones takes time proportional to the number of changes since
+     * the clone was made. Items that have different positions in the two plans are looked up by their id.
+     * 
+     * @param newPlan
+     *            the new version of the plan
+     * @return the items that have been added, removed or moved in the new plan
+     */
+    public PlanDiff diff(SchedulePlan newPlan) {
+        PlanDiff diff = new PlanDiff();
+        ChunkedArray<ScheduledItem> newItems = newPlan.scheduledItems;
+        for (int i = scheduledItems.nextDifference(newItems, 0); i >= 0; i = scheduledItems.nextDifference(newItems, i + 1)) {
+            ScheduledItem oldItem = i < scheduledItems.size() ? scheduledItems.get(i) : null;
+            ScheduledItem newItem = i < newItems.size() ? newItems.get(i) : null;
+            if (oldItem != null && newItem != null && oldItem.getItemToSchedule().getId() == newItem.getItemToSchedule().getId()) {
+                if (oldItem.getStart() != newItem.getStart()) {
+                    diff.addMovedItem(oldItem, newItem);
+                }
+                continue;
+            }
+
+            // the plans gave the position to different items, a moved item is reported at its position in the old plan
+            if (oldItem != null) {
+                ScheduledItem movedItem = newPlan.getScheduledItem(oldItem.getItemToSchedule());
+                if (movedItem == null) {
+                    diff.addRemovedItem(oldItem);
+                }
+                else if (movedItem.getStart() != oldItem.getStart()) {
+                    diff.addMovedItem(oldItem, movedItem);
+                }
+            }
+            if (newItem != null && getScheduledItem(newItem.getItemToSchedule()) == null) {
+                diff.addAddedItem(newItem);
+            }
+        }
+        return diff;
+    }
+
     public int getMakespan() {
         return makespan;
     }
 
+    /**
+     * Returns the makespan the plan would have if the given item was not part of it.
+     * 
+     * @param item
+     *            the item to ignore
+     * @return the makespan of the plan without the item
+     */
+    public int getMakespanWithout(ItemToSchedule item) {
+        ScheduledItem scheduledItem = getCommittedItem(item);
+        if (scheduledItem == null) {
+            return makespan;
+        }
+        IntIntMap itemValues = new IntIntMap();
+        itemValues.put(scheduledItem.getStart(), 1);
+        for (Lane lane : item.getAffectedLanes()) {
+            int end = scheduledItem.getEnd(lane);
+            itemValues.put(end, itemValues.get(end, 0) + 1);
+        }
+
+        // the item only uses a few values, so the biggest value still used by other items is found after a few steps
+        Integer value = startValues.isEmpty() ? null : startValues.last();
+        while (value != null && value > 0) {
+            if (startValues.count(value) > itemValues.get(value, 0)) {
+                return value;
+            }
+            value = startValues.lower(value);
+        }
+        return 0;
+    }
+
     @Override
     public String toString() {
-        return "Scheduling Plan: " + scheduledItems;
+        return "Scheduling Plan: " + getScheduledItems();
     }
 
     public void shiftAll(int shiftValue) {
+        checkNoTransaction();
         // TODO: check if the shift leads to negative values
-        Map<Integer, ScheduledItem> newScheduledItems = new HashMap<Integer, ScheduledItem>();
-        for (ScheduledItem oldItem : scheduledItems.values()) {
-            if (fixedItems.contains(oldItem)) {
-                newScheduledItems.put(oldItem.getItemToSchedule().getId(), oldItem);
-            } else {
-                ScheduledItem newItem = oldItem.changeStart(oldItem.getStart() + shiftValue);
-                newScheduledItems.put(newItem.getItemToSchedule().getId(), newItem);
+        for (int i = 0; i < scheduledItems.size(); i++) {
+            ScheduledItem oldItem = scheduledItems.get(i);
+            if (oldItem != null && !fixedItems.get(i)) {
+                scheduledItems.set(i, oldItem.changeStart(oldItem.getStart() + shiftValue));
             }
         }
 
-        Map<Integer, Integer> newStartValues = new HashMap<Integer, Integer>();
-        for (Entry<Integer, Integer> entry : startValues.entrySet()) {
-            newStartValues.put(entry.getKey() + shiftValue, entry.getValue());
-        }
-
-        scheduledItems.clear();
-        scheduledItems.putAll(newScheduledItems);
+        startValues.shift(shiftValue);
 
-        startValues.clear();
-        startValues.putAll(newStartValues);
+        // the fixed items keep their place, so the lanes are indexed again
+        laneIntervals = new HashMap<Lane, IntervalIndex>();
+        sharingLanes = false;
+        for (ScheduledItem scheduledItem : getScheduledItems()) {
+            for (Lane lane : scheduledItem.getItemToSchedule().getAffectedLanes()) {
+                addInterval(lane, scheduledItem);
+            }
+        }
 
         updateMakespan();
     }
 
+    /**
+     * Returns the scheduled items that require the given item, ordered by their start. The dependent items are looked up directly, so this
+     * takes time proportional to their number. Once the plan has been indexed, all indexed items are considered. Before that, only the
+     * items added by {@link #add(ItemToSchedule, int)} are.
+     * 
+     * @param item
+     *            the required item
+     * @return the scheduled items requiring the item
+     */
     public PriorityQueue<ScheduledItem> getDependentItems(ItemToSchedule item) {
         PriorityQueue<ScheduledItem> dependent = new PriorityQueue<ScheduledItem>();
-        Collection<ItemToSchedule> items = dependentItems.get(item);
-        if (items != null) {
-            for (ScheduledItem scheduled : scheduledItems.values()) {
-                ItemToSchedule itemToSchedule = scheduled.getItemToSchedule();
-                if (items.contains(itemToSchedule)) {
-                    dependent.add(scheduled);
+        if (itemIndex != null) {
+            int index = itemIndex.indexOf(item);
+            if (index >= 0) {
+                for (int dependentItem : itemIndex.getDependentItems(index)) {
+                    addScheduledItem(dependent, scheduledItems.get(dependentItem));
+                }
+            }
+        }
+        else {
+            Collection<ItemToSchedule> items = dependentItems.get(item);
+            if (items != null) {
+                for (ItemToSchedule dependentItem : items) {
+                    addScheduledItem(dependent, getScheduledItem(dependentItem));
                 }
             }
         }
         return dependent;
     }
 
+    private static void addScheduledItem(Collection<ScheduledItem> items, ScheduledItem scheduledItem) {
+        // unscheduled items are skipped
+        if (scheduledItem != null) {
+            items.add(scheduledItem);
+        }
+    }
+
     public ScheduledItem getScheduledItem(ItemToSchedule item) {
-        return scheduledItems.get(item.getId());
+        int position = getPosition(item);
+        return position < 0 ? null : scheduledItems.get(position);
     }
 
     public void unschedule(ScheduledItem scheduledItem) {
-        if (fixedItems.contains(scheduledItem)) {
+        checkNoTransaction();
+        if (isFixed(scheduledItem.getItemToSchedule())) {
             throw new IllegalArgumentException("The item " + scheduledItem + " has been fixated and must not be unscheduled!");
         }
 
         // update start values
-        removeFromStartValues(scheduledItem);
+        removeFromIndexes(scheduledItem);
 
         // update item collection
-        scheduledItems.remove(scheduledItem.getItemToSchedule().getId());
+        storeItem(scheduledItem.getItemToSchedule(), null);
 
         updateMakespan();
     }
 
+    /**
+     * Sets the makespan to the biggest value of the start value index, which takes logarithmic time.
+     */
     private void updateMakespan() {
-        makespan = 0;
-        for (Integer newEnd : startValues.keySet()) {
-            if (newEnd > makespan) {
-                makespan = newEnd;
-            }
-        }
+        makespan = startValues.isEmpty() ? 0 : Math.max(0, startValues.last());
     }
 
     public void schedule(ScheduledItem scheduledItem) {
+        checkNoTransaction();
+        // update item collection
+        storeItem(scheduledItem.getItemToSchedule(), scheduledItem);
+
         // update start values
-        addToStartValues(scheduledItem);
+        addToIndexes(scheduledItem);
 
-        // update item collection
-        scheduledItems.put(scheduledItem.getItemToSchedule().getId(), scheduledItem);
+        updateMakespan();
+    }
+
+    /**
+     * Begins a transaction. While the transaction is open, the items of the plan can only be moved by
+     * {@link #moveTentatively(ItemToSchedule, int)}. The tentative moves do not change the start values, the lanes and the makespan of
+     * the plan until the transaction is committed, so probing a few starts of an item and undoing them is cheap.
+     * 
+     * @throws IllegalStateException
+     *             if a transaction is already open
+     */
+    public void beginTransaction() {
+        if (undoLog != null) {
+            throw new IllegalStateException("The plan already has an open transaction.");
+        }
+        undoLog = new ArrayList<UndoEntry>();
+        undoEntries = new IntIntMap();
+    }
 
+    /**
+     * @return {@code true} if the plan has an open transaction
+     */
+    public boolean isInTransaction() {
+        return undoLog != null;
+    }
+
+    /**
+     * Moves the item to the new start as part of the open transaction. The item has its new start when it is looked up in the plan, but
+     * the start values, the lanes and the makespan of the plan still show its start from the beginning of the transaction.
+     * 
+     * @param itemToMove
+     *            the item to move
+     * @param newStart
+     *            the new start of the item
+     * @return the moved item
+     * @throws IllegalStateException
+     *             if no transaction is open
+     */
+    public ScheduledItem moveTentatively(ItemToSchedule itemToMove, int newStart) {
+        if (undoLog == null) {
+            throw new IllegalStateException("The plan has no open transaction.");
+        }
+        ScheduledItem oldItem = getScheduledItem(itemToMove);
+        if (oldItem == null) {
+            throw new IllegalArgumentException("The plan does not contain this scheduled item!");
+        } else if (isFixed(itemToMove)) {
+            throw new IllegalArgumentException("The item " + oldItem + " has been fixated and must not be moved!");
+        }
+
+        // only the first move of an item is logged, it contains the start the item had before the transaction
+        int position = getPosition(itemToMove);
+        if (!undoEntries.containsKey(position)) {
+            undoEntries.put(position, undoLog.size());
+            undoLog.add(new UndoEntry(position, oldItem));
+        }
+        ScheduledItem newItem = oldItem.changeStart(newStart);
+        scheduledItems.set(position, newItem);
+        return newItem;
+    }
+
+    /**
+     * Applies the tentative moves of the open transaction to the start values, the lanes and the makespan of the plan and closes the
+     * transaction. Every moved item is only updated once, no matter how often it has been moved.
+     * 
+     * @throws IllegalStateException
+     *             if no transaction is open
+     */
+    public void commit() {
+        List<UndoEntry> entries = closeTransaction();
+        for (UndoEntry entry : entries) {
+            ScheduledItem newItem = scheduledItems.get(entry.position);
+            if (newItem != entry.scheduledItem) {
+                removeFromIndexes(entry.scheduledItem);
+                addToIndexes(newItem);
+            }
+        }
         updateMakespan();
     }
+
+    /**
+     * Moves the items back to the starts they had when the transaction was begun and closes the transaction.
+     * 
+     * @throws IllegalStateException
+     *             if no transaction is open
+     */
+    public void rollback() {
+        List<UndoEntry> entries = closeTransaction();
+        for (UndoEntry entry : entries) {
+            scheduledItems.set(entry.position, entry.scheduledItem);
+        }
+    }
+
+    private List<UndoEntry> closeTransaction() {
+        if (undoLog == null) {
+            throw new IllegalStateException("The plan has no open transaction.");
+        }
+        List<UndoEntry> entries = undoLog;
+        undoLog = null;
+        undoEntries = null;
+        return entries;
+    }
+
+    private void checkNoTransaction() {
+        if (undoLog != null) {
+            throw new IllegalStateException("The plan can only be changed tentatively while a transaction is open.");
+        }
+    }
+
+    /**
+     * @return the scheduled item the start values and lanes of the plan currently contain for the given item, which is its item from the
+     *         beginning of the transaction if it has been moved tentatively
+     */
+    private ScheduledItem getCommittedItem(ItemToSchedule item) {
+        int position = getPosition(item);
+        if (position < 0) {
+            return null;
+        }
+        int entry = undoEntries == null ? -1 : undoEntries.get(position, -1);
+        return entry < 0 ? scheduledItems.get(position) : undoLog.get(entry).scheduledItem;
+    }
+
+    /**
+     * The scheduled item that was stored at a position when the transaction was begun.
+     */
+    private static class UndoEntry {
+        private final int position;
+        private final ScheduledItem scheduledItem;
+
+        public UndoEntry(int position, ScheduledItem scheduledItem) {
+            this.position = position;
+            this.scheduledItem = scheduledItem;
+        }
+    }
+
+    /**
+     * Iterates the start values of the index and inserts 0 at its position if it is not part of the index.
+     */
+    private static class StartValueIterator implements Iterator<Integer> {
+        private final Iterator<Integer> values;
+        private boolean addingZero;
+        private Integer nextValue;
+
+        public StartValueIterator(Iterator<Integer> values, boolean addingZero) {
+            this.values = values;
+            this.addingZero = addingZero;
+            nextValue = values.hasNext() ? values.next() : null;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return addingZero || nextValue != null;
+        }
+
+        @Override
+        public Integer next() {
+            if (addingZero && (nextValue == null || nextValue > 0)) {
+                addingZero = false;
+                return 0;
+            }
+            if (nextValue == null) {
+                throw new NoSuchElementException();
+            }
+            Integer value = nextValue;
+            nextValue = values.hasNext() ? values.next() : null;
+            return value;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException("The start values can not be changed through the iterator.");
+        }
+    }
 }
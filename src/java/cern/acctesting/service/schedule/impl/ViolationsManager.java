@@ -18,23 +18,31 @@
 package cern.acctesting.service.schedule.impl;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Iterator;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.ListIterator;
 import java.util.Map;
-import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 import cern.acctesting.service.schedule.ItemToSchedule;
 import cern.acctesting.service.schedule.ScheduledItem;
 import cern.acctesting.service.schedule.constraint.ConstraintDecision;
 import cern.acctesting.service.schedule.constraint.ItemPairConstraint;
+import cern.acctesting.service.schedule.constraint.LaneBasedConstraint;
 import cern.acctesting.service.schedule.constraint.SingleItemConstraint;
+import cern.acctesting.service.schedule.constraint.SymmetricConstraint;
+import cern.acctesting.service.schedule.constraint.TranslationInvariantConstraint;
 import cern.acctesting.service.schedule.constraint.UpdateableConstraint;
-import cern.acctesting.service.schedule.exception.SchedulingException;
+import cern.acctesting.service.schedule.constraint.VersionedConstraint;
+import cern.acctesting.service.schedule.constraint.impl.DependenciesConstraint;
+import cern.acctesting.service.schedule.constraint.impl.NoOverlappingConstraint;
+import cern.acctesting.service.schedule.constraint.impl.StartNowConstraint;
 import cern.acctesting.service.schedule.exception.ViolatorUpdateInvalid;
 import cern.acctesting.service.schedule.impl.Predictor.ConflictPrediction;
 
@@ -49,23 +57,89 @@ public class ViolationsManager {
 
     protected final List<SingleItemConstraint> singleConstraints;
     protected final List<ItemPairConstraint> pairConstraints;
+    private final List<ManagedPairConstraint> managedPairConstraints;
+    private final List<ManagedSingleConstraint> managedSingleConstraints;
 
     /**
-     * The constraint map defines which items are connected to other items through one or more constraints.
+     * The dense index of the items of the plan. All per-item state of the manager is stored in arrays that are indexed by it.
      */
-    protected final Map<ItemToSchedule, Set<ConstraintPartner>> constraintMap;
+    private ItemIndex itemIndex;
+
+    /**
+     * The constraint partners define which items are connected to other items through one or more constraints.
+     */
+    protected ConstraintPartner[][] constraintPartners;
 
     /**
      * The violationsTree is an ordered set of all the constraint violators (ordered by their violation value). It is similar to an ordered
      * list, but it guarantees that an item can be contained at most once. In addition, it provides efficient log(n) operations to add and
      * remove items.
+     * <p>
+     * Only items that actually violate a constraint have a violator. The entry of a movable item without violations is {@code null} until
+     * a change of one of its pairs gives it a violation value, so the tree only has to be maintained for the violated items.
      */
     private final TreeSet<Violator> violationsTree;
-    private final Map<ItemToSchedule, Violator> violationsMapping;
+    private Violator[] violators;
+    private boolean[] fixedItems;
+
+    /**
+     * The items at the positions the pairs were last checked for. If the constraints did not change, the next initialization compares
+     * them with the new plan and only checks the pairs of new, changed or moved items again.
+     */
+    private ScheduledItem[] checkedItems;
+
+    /**
+     * The plan the manager is currently working on and the sum of all its constraint violations. The sum is updated with every change of
+     * a violator, so the values of other plans can be calculated by only looking at the items that differ from this plan.
+     */
+    private SchedulePlan plan;
+    private final ViolatorValues planValues;
 
     private boolean usingPrediction = true;
     private Predictor predictor;
 
+    /**
+     * The updateable constraints are updated by the updater, one after another unless enabled otherwise. The constraints and versions of the last run are remembered, so
+     * the managed constraints only have to be rebuilt if one of them changed.
+     */
+    private final ConstraintUpdater constraintUpdater;
+    private boolean updatingInBackground;
+
+    /**
+     * Plans with at least this number of items are initialized in parallel if enabled. The items are split into ranges of at most
+     * {@link #INITIALIZATION_RANGE} items that are processed by the threads of the pool.
+     */
+    private static final int PARALLEL_INITIALIZATION_THRESHOLD = 1024;
+    private static final int INITIALIZATION_RANGE = 128;
+    private boolean initializingInParallel;
+    private ForkJoinPool initializationPool;
+    private List<Object> updatedConstraints;
+    private long[] updatedVersions;
+
+    /**
+     * The number of decisions that are remembered for the constraints that are independent of the absolute position of the items.
+     */
+    private static final int DECISION_CACHE_SIZE = 1 << 16;
+    private final DecisionCache decisionCache;
+
+    /**
+     * The constraints are ordered by their statistics after this number of checked candidates, so the ones most likely to reject a
+     * candidate are evaluated first. The partners of an item are ordered the same way before its candidates are checked.
+     */
+    private static final int REORDER_INTERVAL = 1024;
+    private int checkedCandidates;
+    private int nextReorder;
+    private boolean reorderingConstraints = true;
+
+    /**
+     * Is increased with every change of the violations, so an {@link EvaluationContext} can detect that the state it was created for is
+     * not valid anymore.
+     */
+    private volatile int stateVersion;
+    private int constraintOrderVersion;
+    private int orderedPartnersItem;
+    private int orderedPartnersVersion;
+
     /**
      * Creates a new instance of the manager that uses the given constraints to determine schedule violations.
      * 
@@ -77,9 +151,12 @@ public class ViolationsManager {
     public ViolationsManager(List<SingleItemConstraint> singleConstraints, List<ItemPairConstraint> pairConstraints) {
 	this.singleConstraints = singleConstraints;
 	this.pairConstraints = pairConstraints;
-	constraintMap = new HashMap<ItemToSchedule, Set<ConstraintPartner>>();
 	violationsTree = new TreeSet<Violator>();
-	violationsMapping = new HashMap<ItemToSchedule, Violator>();
+	planValues = new ViolatorValues();
+	managedPairConstraints = new ArrayList<ManagedPairConstraint>();
+	managedSingleConstraints = new ArrayList<ManagedSingleConstraint>();
+	decisionCache = new DecisionCache(DECISION_CACHE_SIZE);
+	constraintUpdater = new ConstraintUpdater();
     }
 
     /**
@@ -89,88 +166,538 @@ public class ViolationsManager {
      *            the plan containing scheduled items
      */
     public void initialize(SchedulePlan plan) {
-	constraintMap.clear();
+	stateVersion++;
 	violationsTree.clear();
+	planValues.hardViolationsValue = 0;
+	planValues.softViolationsValue = 0;
+	ItemIndex previousIndex = itemIndex;
+	ConstraintPartner[][] previousPartners = constraintPartners;
+	ScheduledItem[] previousCheckedItems = checkedItems;
+	boolean[] previousFixedItems = fixedItems;
+	this.plan = plan;
+	itemIndex = plan.indexItems();
+	violators = new Violator[itemIndex.size()];
+	fixedItems = new boolean[itemIndex.size()];
+	checkedItems = new ScheduledItem[itemIndex.size()];
+	for (int i = 0; i < fixedItems.length; i++) {
+	    checkedItems[i] = plan.getScheduledItem(i);
+	    fixedItems[i] = !plan.canBeMoved(checkedItems[i]);
+	}
 	updateConstraints();
-	List<ItemToSchedule> items = new ArrayList<ItemToSchedule>();
-	for (ScheduledItem item : plan.getScheduledItems()) {
-	    items.add(item.getItemToSchedule());
+	boolean constraintsChanged = constraintsChanged();
+	if (constraintsChanged) {
+	    initializeManagedConstraints();
+	}
+	orderedPartnersItem = -1;
+
+	int[] previousIndexes = new int[itemIndex.size()];
+	boolean[] changedItems = new boolean[itemIndex.size()];
+	if (constraintsChanged || previousPartners == null) {
+	    Arrays.fill(previousIndexes, -1);
+	    Arrays.fill(changedItems, true);
+	    previousPartners = null;
+	}
+	else {
+	    mapPreviousItems(previousIndex, previousCheckedItems, previousFixedItems, previousIndexes, changedItems);
 	}
 
-	if (items.isEmpty()) { return; }
-	initializeConstraintMap(items);
-	initializeViolationTree(plan);
-	predictor = new Predictor(plan, constraintMap);
+	initializeConstraintMap(previousIndexes, previousPartners, changedItems);
+	if (itemIndex.size() == 0) { return; }
+	initializeViolationTree(plan, changedItems);
+	initializePlanValues(plan);
+	predictor = new Predictor(plan, constraintPartners);
     }
 
+    /**
+     * Looks up the items of the new plan in the index of the previous run. An item is only taken over if its definition did not change.
+     * It counts as changed if it is new, was moved since its pairs were last checked or has been fixed or released.
+     */
+    private void mapPreviousItems(ItemIndex previousIndex, ScheduledItem[] previousCheckedItems, boolean[] previousFixedItems,
+	    int[] previousIndexes, boolean[] changedItems) {
+	for (int i = 0; i < previousIndexes.length; i++) {
+	    ItemToSchedule item = itemIndex.getItem(i);
+	    int previous = previousIndex.indexOf(item);
+	    if (previous >= 0 && !previousIndex.getItem(previous).hasSameDefinition(item)) {
+		previous = -1;
+	    }
+	    previousIndexes[i] = previous;
+	    changedItems[i] = previous < 0 || previousFixedItems[previous] != fixedItems[i]
+		    || previousCheckedItems[previous].getStart() != checkedItems[i].getStart();
+	}
+    }
+
+    /**
+     * Sums up the single constraint values of all items and the values of all pairs. Pairs of two fixed items are never checked, as no
+     * change of the plan can alter their violation values.
+     */
+    private void initializePlanValues(SchedulePlan plan) {
+	for (int i = 0; i < constraintPartners.length; i++) {
+	    addValues(planValues, checkSingleConstraints(plan.getScheduledItem(i)), 1);
+	    for (ConstraintPartner partner : constraintPartners[i]) {
+		// both partners of a pair share the same container, so it is counted by the one with the smaller index
+		if (partner.partnerIndex > i) {
+		    addValues(planValues, partner.violationsContainer.values, 1);
+		}
+	    }
+	}
+    }
+
+    private static void addValues(ViolatorValues sum, ViolatorValues values, int factor) {
+	sum.hardViolationsValue += factor * values.hardViolationsValue;
+	sum.softViolationsValue += factor * values.softViolationsValue;
+    }
+
+    /**
+     * Updates the constraints and pins the data of the versioned constraints for the coming run. Only versioned constraints are updated in
+     * the background, as the other ones can not keep their old data while they are updated.
+     */
     private void updateConstraints() {
-	for (SingleItemConstraint constraint : singleConstraints) {
-	    if (constraint instanceof UpdateableConstraint) {
-		((UpdateableConstraint) constraint).updateConstraint();
+	List<UpdateableConstraint> updateableConstraints = new ArrayList<UpdateableConstraint>();
+	List<UpdateableConstraint> versionedConstraints = new ArrayList<UpdateableConstraint>();
+	for (Object constraint : getAllConstraints()) {
+	    if (updatingInBackground && constraint instanceof VersionedConstraint) {
+		versionedConstraints.add((UpdateableConstraint) constraint);
 	    }
+	    else if (constraint instanceof UpdateableConstraint) {
+		updateableConstraints.add((UpdateableConstraint) constraint);
+	    }
+	}
+
+	constraintUpdater.update(updateableConstraints);
+	if (!versionedConstraints.isEmpty()) {
+	    constraintUpdater.updateInBackground(versionedConstraints);
 	}
 
+	// the decisions must not change during the run, otherwise the cached decisions and violation values get inconsistent
+	for (Object constraint : getAllConstraints()) {
+	    if (constraint instanceof VersionedConstraint) {
+		((VersionedConstraint) constraint).switchToLatestData();
+	    }
+	}
+    }
+
+    private List<Object> getAllConstraints() {
+	List<Object> constraints = new ArrayList<Object>(singleConstraints.size() + pairConstraints.size());
+	constraints.addAll(singleConstraints);
+	constraints.addAll(pairConstraints);
+	return constraints;
+    }
+
+    /**
+     * Compares the constraints and their versions with the ones of the last run and remembers the current ones.
+     * 
+     * @return {@code true} if a constraint was added, removed or might have changed its decisions since the last run
+     */
+    private boolean constraintsChanged() {
+	List<Object> constraints = getAllConstraints();
+	long[] versions = new long[constraints.size()];
+	boolean changed = updatedConstraints == null || updatedConstraints.size() != constraints.size();
+	for (int i = 0; i < versions.length; i++) {
+	    Object constraint = constraints.get(i);
+	    if (constraint instanceof VersionedConstraint) {
+		versions[i] = ((VersionedConstraint) constraint).getVersion();
+	    }
+	    else if (constraint instanceof UpdateableConstraint) {
+		// there is no way to know what the update did
+		changed = true;
+	    }
+	    changed = changed || updatedConstraints.get(i) != constraint || updatedVersions[i] != versions[i];
+	}
+	updatedConstraints = constraints;
+	updatedVersions = versions;
+	return changed;
+    }
+
+    private void initializeManagedConstraints() {
+	// the constraints might have changed their decisions during the update
+	decisionCache.clear();
+	managedPairConstraints.clear();
 	for (ItemPairConstraint constraint : pairConstraints) {
-	    if (constraint instanceof UpdateableConstraint) {
-		((UpdateableConstraint) constraint).updateConstraint();
+	    managedPairConstraints.add(new ManagedPairConstraint(constraint, managedPairConstraints.size()));
+	}
+	managedSingleConstraints.clear();
+	for (SingleItemConstraint constraint : singleConstraints) {
+	    managedSingleConstraints.add(new ManagedSingleConstraint(constraint));
+	}
+	checkedCandidates = 0;
+	nextReorder = REORDER_INTERVAL;
+	constraintOrderVersion = 0;
+    }
+
+    /**
+     * Orders the constraints by their expected costs to find a violation. The single constraints are sorted right away, the constraint
+     * lists of the partners are sorted the next time they are used.
+     */
+    private void reorderConstraints() {
+	for (ManagedPairConstraint constraint : managedPairConstraints) {
+	    constraint.costPerViolation = constraint.statistics.getCostPerViolation();
+	}
+	for (ManagedSingleConstraint constraint : managedSingleConstraints) {
+	    constraint.costPerViolation = constraint.statistics.getCostPerViolation();
+	}
+	Collections.sort(managedSingleConstraints, new Comparator<ManagedSingleConstraint>() {
+	    @Override
+	    public int compare(ManagedSingleConstraint o1, ManagedSingleConstraint o2) {
+		return Double.compare(o1.costPerViolation, o2.costPerViolation);
 	    }
+	});
+	constraintOrderVersion++;
+    }
+
+    /**
+     * Orders the partners of the item so that the partners that rejected the most candidates are checked first.
+     */
+    private void orderPartners(int itemIndex, ConstraintPartner[] partners) {
+	if (orderedPartnersItem == itemIndex && orderedPartnersVersion == constraintOrderVersion) {
+	    return;
 	}
+	Arrays.sort(partners, new Comparator<ConstraintPartner>() {
+	    @Override
+	    public int compare(ConstraintPartner o1, ConstraintPartner o2) {
+		return (o1.rejections > o2.rejections ? -1 : (o1.rejections == o2.rejections ? 0 : 1));
+	    }
+	});
+	orderedPartnersItem = itemIndex;
+	orderedPartnersVersion = constraintOrderVersion;
     }
 
-    private void initializeViolationTree(SchedulePlan plan) {
-	for (ScheduledItem item : plan.getScheduledItems()) {
-	    if (plan.getFixedItems().contains(item)) {
+    private void initializeViolationTree(SchedulePlan plan, boolean[] changedItems) {
+	int size = constraintPartners.length;
+	if (initializingInParallel && size >= PARALLEL_INITIALIZATION_THRESHOLD) {
+	    if (initializationPool == null) {
+		initializationPool = new ForkJoinPool();
+	    }
+	    // the violators are created after all pairs have been checked, as a pair might be checked by the partner
+	    initializationPool.invoke(new InitializationTask(plan, changedItems, true, 0, size));
+	    initializationPool.invoke(new InitializationTask(plan, changedItems, false, 0, size));
+	}
+	else {
+	    checkOwnedPairs(plan, changedItems, 0, size);
+	    createViolators(plan, 0, size);
+	}
+
+	List<Violator> createdViolators = new ArrayList<Violator>();
+	for (Violator violator : violators) {
+	    if (violator != null) {
+		createdViolators.add(violator);
+	    }
+	}
+	// adding the violators in their order keeps the rebalancing of the tree to a minimum
+	Collections.sort(createdViolators);
+	violationsTree.addAll(createdViolators);
+    }
+
+    /**
+     * Checks the pairs of the items in the given range. Every pair is checked by exactly one of its items, so the ranges can be processed
+     * in parallel without synchronizing the shared containers.
+     */
+    private void checkOwnedPairs(SchedulePlan plan, boolean[] changedItems, int from, int to) {
+	for (int i = from; i < to; i++) {
+	    if (fixedItems[i]) {
 		continue;
 	    }
-	    ItemToSchedule itemToSchedule = item.getItemToSchedule();
-	    Set<ConstraintPartner> pairs = constraintMap.get(itemToSchedule);
-	    if (pairs != null && !pairs.isEmpty()) {
-		checkPairConstraints(item, plan, pairs, false);
+	    ScheduledItem item = plan.getScheduledItem(i);
+	    for (ConstraintPartner partner : constraintPartners[i]) {
+		// the containers of unchanged pairs have been taken over from the previous run
+		if ((changedItems[i] || changedItems[partner.partnerIndex]) && isPairOwner(i, partner)) {
+		    partner.violationsContainer.updateValues(checkPair(item, plan.getScheduledItem(partner.partnerIndex), partner));
+		}
+	    }
+	}
+    }
+
+    /**
+     * Pairs with a fixed item are checked by the movable item. Symmetric pairs are checked by the item with the smaller index. Other pairs
+     * are checked by the item with the bigger index, which results in the container values the sequential check of both items had.
+     */
+    private boolean isPairOwner(int item, ConstraintPartner partner) {
+	if (fixedItems[partner.partnerIndex]) {
+	    return true;
+	}
+	return partner.isSymmetric() ? partner.partnerIndex > item : partner.partnerIndex < item;
+    }
+
+    private void createViolators(SchedulePlan plan, int from, int to) {
+	for (int i = from; i < to; i++) {
+	    if (!fixedItems[i]) {
+		violators[i] = createViolator(i, plan.getScheduledItem(i));
 	    }
+	}
+    }
 
-	    Violator violator = new Violator(item, this);
+    /**
+     * Processes a range of items during the initialization and splits it up if it is too big.
+     */
+    private class InitializationTask extends RecursiveAction {
+	private static final long serialVersionUID = 1L;
+	private final SchedulePlan plan;
+	private final boolean[] changedItems;
+	private final boolean checkingPairs;
+	private final int from;
+	private final int to;
+
+	public InitializationTask(SchedulePlan plan, boolean[] changedItems, boolean checkingPairs, int from, int to) {
+	    this.plan = plan;
+	    this.changedItems = changedItems;
+	    this.checkingPairs = checkingPairs;
+	    this.from = from;
+	    this.to = to;
+	}
+
+	@Override
+	protected void compute() {
+	    if (to - from > INITIALIZATION_RANGE) {
+		int middle = (from + to) >>> 1;
+		invokeAll(new InitializationTask(plan, changedItems, checkingPairs, from, middle), new InitializationTask(plan,
+			changedItems, checkingPairs, middle, to));
+	    }
+	    else if (checkingPairs) {
+		checkOwnedPairs(plan, changedItems, from, to);
+	    }
+	    else {
+		createViolators(plan, from, to);
+	    }
+	}
+    }
+
+    /**
+     * Calculates the violation values of the given item from its single constraints and the containers of its pairs.
+     * 
+     * @return the violator of the item or {@code null} if the item has no violations
+     */
+    private Violator createViolator(int index, ScheduledItem item) {
+	ViolatorValues values = checkSingleConstraints(item);
+	for (ConstraintPartner partner : constraintPartners[index]) {
+	    addValues(values, partner.violationsContainer.values, 1);
+	}
+	if (values.hardViolationsValue == 0 && values.softViolationsValue == 0) {
+	    return null;
+	}
+	return new Violator(item, index, values.hardViolationsValue, values.softViolationsValue, this);
+    }
+
+    /**
+     * Replaces the violator of the item with the given one. Violators without violations are not stored.
+     */
+    private void storeViolator(int index, Violator violator) {
+	Violator oldViolator = violators[index];
+	if (oldViolator != null) {
+	    violationsTree.remove(oldViolator);
+	}
+	if (violator != null && (violator.getHardViolationsValue() != 0 || violator.getSoftViolationsValue() != 0)) {
 	    violationsTree.add(violator);
-	    violationsMapping.put(itemToSchedule, violator);
+	    violators[index] = violator;
+	}
+	else {
+	    violators[index] = null;
 	}
     }
 
-    private void initializeConstraintMap(List<ItemToSchedule> itemsToSchedule) {
-	Iterator<ItemToSchedule> outer = itemsToSchedule.iterator();
-	while (outer.hasNext()) {
-	    ItemToSchedule itemOuter = outer.next();
-	    ListIterator<ItemToSchedule> inner = itemsToSchedule.listIterator(itemsToSchedule.size());
-	    while (inner.hasPrevious()) {
-		ItemToSchedule itemInner = inner.previous();
-		if (itemOuter == itemInner) {
-		    break;
+    /**
+     * @return the violator of the movable item with the given index. A violator without violations is created if the item has none.
+     */
+    private Violator getViolator(int index) {
+	Violator violator = violators[index];
+	if (violator == null) {
+	    violator = new Violator(plan.getScheduledItem(index), index, 0, 0, this);
+	}
+	return violator;
+    }
+
+    /**
+     * Builds the constraint graph of the plan. The pairs of items that were already part of the previous graph are taken over from it, only
+     * the pairs with at least one new item are discovered by asking the constraints. The containers of the taken over pairs are kept if
+     * both items are unchanged.
+     * 
+     * @param previousIndexes
+     *            the index of every item in the previous graph or -1 if the item is new
+     * @param previousPartners
+     *            the previous graph or {@code null} if it cannot be used
+     * @param changedItems
+     *            the items whose pairs have to be checked again
+     */
+    private void initializeConstraintMap(int[] previousIndexes, ConstraintPartner[][] previousPartners, boolean[] changedItems) {
+	int size = itemIndex.size();
+	List<List<ConstraintPartner>> partners = new ArrayList<List<ConstraintPartner>>(size);
+	int[] newItems = new int[size];
+	int newItemCount = 0;
+	for (int i = 0; i < size; i++) {
+	    partners.add(new ArrayList<ConstraintPartner>());
+	    if (previousIndexes[i] < 0) {
+		newItems[newItemCount++] = i;
+	    }
+	}
+
+	BitSet[] relatedSignatures = matchLaneSignatures();
+	if (relatedSignatures != null) {
+	    int[] marks = new int[size];
+	    Arrays.fill(marks, -1);
+	    int[] candidates = new int[size];
+	    for (int i = 0; i < newItemCount; i++) {
+		int item = newItems[i];
+		int count = collectCandidates(item, relatedSignatures[itemIndex.getLaneSignature(item)], previousIndexes, marks, candidates);
+		// the candidates are connected in the same order as by the loop over all pairs
+		Arrays.sort(candidates, 0, count);
+		for (int candidate = count - 1; candidate >= 0; candidate--) {
+		    discoverPair(partners, Math.min(item, candidates[candidate]), Math.max(item, candidates[candidate]));
 		}
-		List<ItemPairConstraint> constraints = new ArrayList<ItemPairConstraint>(pairConstraints.size());
-		for (ItemPairConstraint constraint : pairConstraints) {
-		    if (constraint.needsChecking(itemOuter, itemInner)) {
-			constraints.add(constraint);
+	    }
+	}
+	else {
+	    for (int outer = 0; outer < size; outer++) {
+		if (previousIndexes[outer] < 0) {
+		    for (int inner = size - 1; inner > outer; inner--) {
+			discoverPair(partners, outer, inner);
 		    }
 		}
+		else {
+		    for (int i = newItemCount - 1; i >= 0 && newItems[i] > outer; i--) {
+			discoverPair(partners, outer, newItems[i]);
+		    }
+		}
+	    }
+	}
+
+	if (previousPartners != null) {
+	    int[] currentIndexes = new int[previousPartners.length];
+	    Arrays.fill(currentIndexes, -1);
+	    for (int i = 0; i < size; i++) {
+		if (previousIndexes[i] >= 0) {
+		    currentIndexes[previousIndexes[i]] = i;
+		}
+	    }
+	    for (int i = 0; i < size; i++) {
+		if (previousIndexes[i] < 0) {
+		    continue;
+		}
+		for (ConstraintPartner previous : previousPartners[previousIndexes[i]]) {
+		    int partner = currentIndexes[previous.partnerIndex];
+		    if (partner > i) {
+			// the constraints and the kernel of a pair only depend on the definition of its items
+			ViolationsContainer container = changedItems[i] || changedItems[partner] ? new ViolationsContainer()
+				: previous.violationsContainer;
+			addPair(partners, i, partner, previous.constraints, container, previous.kernel, previous.first);
+		    }
+		}
+	    }
+	}
+
+	constraintPartners = new ConstraintPartner[size][];
+	for (int i = 0; i < size; i++) {
+	    constraintPartners[i] = partners.get(i).toArray(new ConstraintPartner[partners.get(i).size()]);
+	}
+    }
 
-		if (!constraints.isEmpty()) {
-		    ViolationsContainer container = new ViolationsContainer(new ArrayList<ConstraintDecision>(pairConstraints.size()));
-		    addPair(itemOuter, itemInner, container, constraints);
-		    addPair(itemInner, itemOuter, container, constraints);
+    /**
+     * Asks every lane based constraint once for every pair of lane signatures of the plan. If all pair constraints are either lane based
+     * or dependencies, the possible partners of an item can be found without looking at all other items.
+     * 
+     * @return for every signature the signatures its items might be connected with, or {@code null} if all pairs of items have to be
+     *         checked
+     */
+    private BitSet[] matchLaneSignatures() {
+	int signatureCount = itemIndex.getSignatureCount();
+	boolean indexed = true;
+	BitSet[] relatedSignatures = new BitSet[signatureCount];
+	for (int signature = 0; signature < signatureCount; signature++) {
+	    relatedSignatures[signature] = new BitSet(signatureCount);
+	}
+
+	for (ManagedPairConstraint constraint : managedPairConstraints) {
+	    constraint.matchingSignatures = null;
+	    if (!constraint.laneBased) {
+		indexed &= constraint.kernel == ConstraintKernel.DEPENDENCIES;
+		continue;
+	    }
+	    BitSet[] matchingSignatures = new BitSet[signatureCount];
+	    for (int signature1 = 0; signature1 < signatureCount; signature1++) {
+		matchingSignatures[signature1] = new BitSet(signatureCount);
+		int item1 = itemIndex.getSignatureItems(signature1)[0];
+		for (int signature2 = 0; signature2 < signatureCount; signature2++) {
+		    if (needsChecking(constraint, item1, itemIndex.getSignatureItems(signature2)[0])) {
+			matchingSignatures[signature1].set(signature2);
+			// the constraint might not be symmetric, so the signatures are related in both directions
+			relatedSignatures[signature1].set(signature2);
+			relatedSignatures[signature2].set(signature1);
+		    }
 		}
 	    }
+	    constraint.matchingSignatures = matchingSignatures;
+	}
+	return indexed ? relatedSignatures : null;
+    }
+
+    /**
+     * Collects all items that might be connected with the given item. Pairs of two new items are only collected by the item with the
+     * smaller index, pairs of two known items are not collected at all.
+     * 
+     * @return the number of candidates
+     */
+    private int collectCandidates(int item, BitSet signatures, int[] previousIndexes, int[] marks, int[] candidates) {
+	int count = 0;
+	marks[item] = item;
+	for (int signature = signatures.nextSetBit(0); signature >= 0; signature = signatures.nextSetBit(signature + 1)) {
+	    count = addCandidates(item, itemIndex.getSignatureItems(signature), previousIndexes, marks, candidates, count);
+	}
+	count = addCandidates(item, itemIndex.getRequiredItems(item), previousIndexes, marks, candidates, count);
+	count = addCandidates(item, itemIndex.getDependentItems(item), previousIndexes, marks, candidates, count);
+	return count;
+    }
+
+    private static int addCandidates(int item, int[] items, int[] previousIndexes, int[] marks, int[] candidates, int count) {
+	for (int candidate : items) {
+	    if (marks[candidate] != item && (candidate > item || previousIndexes[candidate] >= 0)) {
+		marks[candidate] = item;
+		candidates[count++] = candidate;
+	    }
+	}
+	return count;
+    }
 
-	    if (!constraintMap.containsKey(itemOuter)) {
-		constraintMap.put(itemOuter, new HashSet<ViolationsManager.ConstraintPartner>());
+    private void discoverPair(List<List<ConstraintPartner>> partners, int item1, int item2) {
+	List<ManagedPairConstraint> constraints = new ArrayList<ManagedPairConstraint>(managedPairConstraints.size());
+	boolean usingKernel = false;
+	for (ManagedPairConstraint constraint : managedPairConstraints) {
+	    if (needsChecking(constraint, item1, item2)) {
+		constraints.add(constraint);
+		usingKernel |= constraint.kernel != ConstraintKernel.GENERIC;
 	    }
 	}
+
+	if (!constraints.isEmpty()) {
+	    PairKernel kernel = usingKernel ? new PairKernel(itemIndex, item1, item2) : null;
+	    addPair(partners, item1, item2, constraints, new ViolationsContainer(), kernel, true);
+	}
     }
 
-    private void addPair(ItemToSchedule item1, ItemToSchedule item2, ViolationsContainer container, List<ItemPairConstraint> constraints) {
-	Set<ConstraintPartner> pairs = constraintMap.get(item1);
-	if (pairs == null) {
-	    pairs = new HashSet<ConstraintPartner>();
+    /**
+     * Connects the two items with each other.
+     * 
+     * @param first
+     *            {@code true} if the first item is the first item of the kernel
+     */
+    private void addPair(List<List<ConstraintPartner>> partners, int item1, int item2, List<ManagedPairConstraint> constraints,
+	    ViolationsContainer container, PairKernel kernel, boolean first) {
+	List<ConstraintPartner> partners1 = partners.get(item1);
+	List<ConstraintPartner> partners2 = partners.get(item2);
+	int slot1 = partners1.size();
+	int slot2 = partners2.size();
+	partners1.add(new ConstraintPartner(item2, itemIndex.getItem(item2), container, constraints, kernel, first, slot1, slot2));
+	partners2.add(new ConstraintPartner(item1, itemIndex.getItem(item1), container, constraints, kernel, !first, slot2, slot1));
+    }
+
+    private boolean needsChecking(ManagedPairConstraint constraint, int item1, int item2) {
+	if (constraint.matchingSignatures != null) {
+	    return constraint.matchingSignatures[itemIndex.getLaneSignature(item1)].get(itemIndex.getLaneSignature(item2));
+	}
+	switch (constraint.kernel) {
+	case NO_OVERLAPPING:
+	    return itemIndex.sharesLanes(item1, item2);
+	case DEPENDENCIES:
+	    return itemIndex.requires(item1, item2) || itemIndex.requires(item2, item1);
+	default:
+	    return constraint.constraint.needsChecking(itemIndex.getItem(item1), itemIndex.getItem(item2));
 	}
-	pairs.add(new ConstraintPartner(item2, container, constraints));
-	constraintMap.put(item1, pairs);
     }
 
     /**
@@ -178,6 +705,8 @@ public class ViolationsManager {
      * is merely checking if such a rescheduling would be possible and what it would mean for the constriant violation values of the
      * involved items. This method does not automatically reschedule the item if it is possible to do so. It returns an items that contains
      * all information necessary to efficiently reschedule the item and update all constraint ciolations accordingly.
+     * <p>
+     * Use an {@link EvaluationContext} to check several start values of the same item.
      * 
      * @param newItem
      *            the new scheduled item to be checked against the given plan
@@ -189,81 +718,158 @@ public class ViolationsManager {
      *             is thrown when the rescheduling is not possible because rescheduling would lead to bigger contraint violations
      */
     public ViolatorUpdate tryViolatorUpdate(ScheduledItem newItem, SchedulePlan plan) throws ViolatorUpdateInvalid {
-	ItemToSchedule itemToSchedule = newItem.getItemToSchedule();
-	Violator violator = violationsMapping.get(itemToSchedule);
+	Violator violator = getViolator(itemIndex.indexOf(newItem.getItemToSchedule()));
+	return new EvaluationContext(violator, plan).evaluate(newItem);
+    }
 
-	ViolatorValues newValues = new ViolatorValues();
+    /**
+     * Creates a context to check new start values of the given violator against the current state of the manager. The context stays
+     * valid until the violations of the manager are changed.
+     * 
+     * @param violator
+     *            the violator that should be moved
+     * @return the context to evaluate the new start values
+     */
+    public EvaluationContext createEvaluationContext(Violator violator) {
+	return new EvaluationContext(violator, plan);
+    }
 
-	calculateSingleConstraintValues(newItem, violator, newValues);
+    /**
+     * A view of the manager that is used to check new start values of a single violator. Everything the checks depend on, like the
+     * positions of the partner items and the violation values of the pairs, is copied when the context is created, so evaluating a
+     * candidate changes neither the violations nor the plan. It only updates the bookkeeping that is used to order the constraints and
+     * partners: the number of checked candidates, the rejections of the partners and the {@link ConstraintStatistics}. This bookkeeping is
+     * not synchronized, so the context must only be used by one thread at a time.
+     * <p>
+     * The manager must not be updated while the context is in use, otherwise the evaluation fails with an {@link IllegalStateException}.
+     */
+    protected class EvaluationContext {
+	private final int version;
+	private final int itemIndex;
+	private final Violator violator;
+	private final ManagedSingleConstraint[] singleConstraints;
+	private final ConstraintPartner[] partners;
+	private final ScheduledItem[] partnerItems;
+	private final ViolatorValues[] containerValues;
+	private final Violator[] partnerViolators;
+	private final boolean usingPrediction;
+
+	private EvaluationContext(Violator violator, SchedulePlan plan) {
+	    version = stateVersion;
+	    itemIndex = violator.getItemIndex();
+	    this.violator = violator;
+	    usingPrediction = ViolationsManager.this.usingPrediction;
+
+	    // the constraints and partners are ordered now, as the evaluation must not change them
+	    if (reorderingConstraints && checkedCandidates >= nextReorder) {
+		reorderConstraints();
+		nextReorder = checkedCandidates + REORDER_INTERVAL;
+	    }
+	    singleConstraints = managedSingleConstraints.toArray(new ManagedSingleConstraint[managedSingleConstraints.size()]);
+	    ConstraintPartner[] itemPartners = constraintPartners[itemIndex];
+	    if (reorderingConstraints) {
+		orderPartners(itemIndex, itemPartners);
+	    }
+	    partners = itemPartners.clone();
+	    partnerItems = new ScheduledItem[partners.length];
+	    containerValues = new ViolatorValues[partners.length];
+	    partnerViolators = new Violator[partners.length];
+	    for (int i = 0; i < partners.length; i++) {
+		ConstraintPartner partner = partners[i];
+		partner.orderConstraints();
+		partnerItems[i] = plan.getScheduledItem(partner.partnerIndex);
+		containerValues[i] = new ViolatorValues();
+		addValues(containerValues[i], partner.violationsContainer.values, 1);
+		if (!fixedItems[partner.partnerIndex]) {
+		    partnerViolators[i] = getViolator(partner.partnerIndex);
+		}
+	    }
+	    if (usingPrediction) {
+		predictor.prepare(itemIndex);
+	    }
+	}
 
-	if (usingPrediction) {
-	    ConflictPrediction prediction = predictor.predictConflicts(newItem);
-	    checkUpdateValid(violator, newValues.hardViolationsValue + prediction.getDefinedHardConflictValue(),
-		    newValues.softViolationsValue);
+	/**
+	 * Checks the violator at the given start value.
+	 * 
+	 * @param start
+	 *            the new start value of the violator
+	 * @return a {@link ViolatorUpdate} object containing all the information about the rescheduling and the changes to the
+	 *         constraint violations
+	 * @throws ViolatorUpdateInvalid
+	 *             is thrown when the item would violate the constraints more than it does now
+	 */
+	public ViolatorUpdate evaluate(int start) throws ViolatorUpdateInvalid {
+	    return evaluate(violator.getScheduledItem().changeStart(start));
 	}
 
-	Set<ConstraintPartner> partners = constraintMap.get(itemToSchedule);
-	List<PartnerUpdate> partnerUpdates = new ArrayList<PartnerUpdate>(partners == null ? 0 : partners.size());
-	if (partners != null) {
-	    for (ConstraintPartner partner : partners) {
-		ScheduledItem partnerItem = plan.getScheduledItem(partner.getPartnerItem());
+	private ViolatorUpdate evaluate(ScheduledItem newItem) throws ViolatorUpdateInvalid {
+	    if (version != stateVersion) {
+		throw new IllegalStateException("The violations have been changed since the evaluation context was created.");
+	    }
+	    checkedCandidates++;
+
+	    ViolatorValues newValues = new ViolatorValues();
+	    calculateSingleConstraintValues(newItem, newValues);
+
+	    if (usingPrediction) {
+		ConflictPrediction prediction = predictor.predictConflicts(newItem, itemIndex);
+		checkUpdateValid(violator, newValues.hardViolationsValue + prediction.getDefinedHardConflictValue(),
+			newValues.softViolationsValue);
+	    }
+
+	    List<PartnerUpdate> partnerUpdates = new ArrayList<PartnerUpdate>(partners.length);
+	    for (int i = 0; i < partners.length; i++) {
 		ViolatorValues newPartnerValues = new ViolatorValues();
-		calculatePairConstraintValues(newItem, violator, newValues, partner, partnerItem, newPartnerValues);
-		updatePartnerViolator(partnerUpdates, partner, partnerItem, newPartnerValues);
+		calculatePairConstraintValues(newItem, newValues, partners[i], partnerItems[i], newPartnerValues);
+		addValues(newValues, newPartnerValues, 1);
+		partnerUpdates.add(createPartnerUpdate(i, newPartnerValues));
 	    }
-	}
 
-	Violator updatedViolator = new Violator(newItem, newValues.hardViolationsValue, newValues.softViolationsValue, this);
-	return new ViolatorUpdate(updatedViolator, partnerUpdates);
-    }
+	    Violator updatedViolator = new Violator(newItem, itemIndex, newValues.hardViolationsValue, newValues.softViolationsValue,
+		    ViolationsManager.this);
+	    return new ViolatorUpdate(updatedViolator, partnerUpdates);
+	}
 
-    private void updatePartnerViolator(List<PartnerUpdate> partnerUpdates, ConstraintPartner partner, ScheduledItem partnerItem,
-	    ViolatorValues newPartnerValues) {
-	Violator partnerViolator = violationsMapping.get(partner.getPartnerItem());
-	if (partnerViolator != null) {
-	    ViolatorValues oldParterValues = partner.violationsContainer.values;
+	private PartnerUpdate createPartnerUpdate(int partner, ViolatorValues newPartnerValues) {
+	    Violator partnerViolator = partnerViolators[partner];
+	    if (partnerViolator == null) {
+		// fixed partners have no violator, but the container of the pair must still follow the plan
+		return new PartnerUpdate(partners[partner], newPartnerValues, null, null);
+	    }
+	    ViolatorValues oldParterValues = containerValues[partner];
 	    int newHardValue = partnerViolator.getHardViolationsValue()
 		    + (newPartnerValues.hardViolationsValue - oldParterValues.hardViolationsValue);
 	    int newSoftValue = partnerViolator.getSoftViolationsValue()
 		    + (newPartnerValues.softViolationsValue - oldParterValues.softViolationsValue);
-	    Violator updatedPartner = new Violator(partnerItem, newHardValue, newSoftValue, this);
-	    partnerUpdates.add(new PartnerUpdate(partner, newPartnerValues, partnerViolator, updatedPartner));
+	    Violator updatedPartner = new Violator(partnerItems[partner], partners[partner].partnerIndex, newHardValue, newSoftValue,
+		    ViolationsManager.this);
+	    return new PartnerUpdate(partners[partner], newPartnerValues, partnerViolator, updatedPartner);
 	}
-    }
 
-    private void calculatePairConstraintValues(ScheduledItem newItem, Violator violator, ViolatorValues newValues,
-	    ConstraintPartner partner, ScheduledItem partnerItem, ViolatorValues newPartnerValues) throws ViolatorUpdateInvalid {
-	for (ItemPairConstraint constraint : partner.getConstraints()) {
-	    ConstraintDecision decision = constraint.check(newItem, partnerItem);
-	    if (!decision.isFulfilled()) {
-		if (decision.isHardConstraint()) {
-		    newValues.hardViolationsValue += decision.getViolationValue();
-		    newPartnerValues.hardViolationsValue += decision.getViolationValue();
-		}
-		else {
-		    newValues.softViolationsValue += decision.getViolationValue();
-		    newPartnerValues.softViolationsValue += decision.getViolationValue();
+	private void calculatePairConstraintValues(ScheduledItem newItem, ViolatorValues newValues, ConstraintPartner partner,
+		ScheduledItem partnerItem, ViolatorValues newPartnerValues) throws ViolatorUpdateInvalid {
+	    for (ManagedPairConstraint constraint : partner.getConstraints()) {
+		long start = constraint.statistics.startEvaluation();
+		boolean violated = addPairViolation(constraint, partner, newItem, partnerItem, newPartnerValues);
+		constraint.statistics.finishEvaluation(start, violated);
+		if (violated
+			&& !isUpdateValid(violator, newValues.hardViolationsValue + newPartnerValues.hardViolationsValue,
+				newValues.softViolationsValue + newPartnerValues.softViolationsValue)) {
+		    partner.rejections++;
+		    throw new ViolatorUpdateInvalid();
 		}
-
-		checkUpdateValid(violator, newValues.hardViolationsValue, newValues.softViolationsValue);
 	    }
 	}
-    }
 
-    private void calculateSingleConstraintValues(ScheduledItem newItem, Violator violator, ViolatorValues newValues)
-	    throws ViolatorUpdateInvalid {
-	for (SingleItemConstraint constraint : singleConstraints) {
-	    ConstraintDecision decision = constraint.check(newItem);
-	    if (!decision.isFulfilled()) {
-		if (decision.isHardConstraint()) {
-		    newValues.hardViolationsValue += decision.getViolationValue();
-		}
-		else {
-		    newValues.softViolationsValue += decision.getViolationValue();
-		}
-	    }
+	private void calculateSingleConstraintValues(ScheduledItem newItem, ViolatorValues newValues) throws ViolatorUpdateInvalid {
+	    for (ManagedSingleConstraint constraint : singleConstraints) {
+		long start = constraint.statistics.startEvaluation();
+		boolean violated = addSingleViolation(constraint, newItem, newValues);
+		constraint.statistics.finishEvaluation(start, violated);
 
-	    checkUpdateValid(violator, newValues.hardViolationsValue, newValues.softViolationsValue);
+		checkUpdateValid(violator, newValues.hardViolationsValue, newValues.softViolationsValue);
+	    }
 	}
     }
 
@@ -283,36 +889,34 @@ public class ViolationsManager {
     }
 
     public void updateViolator(ViolatorUpdate update) {
+	stateVersion++;
 	Violator newViolator = update.getUpdatedViolator();
-	ItemToSchedule itemToSchedule = newViolator.getScheduledItem().getItemToSchedule();
-	Violator oldViolator = violationsMapping.get(itemToSchedule);
+	int index = newViolator.getItemIndex();
+	Violator oldViolator = getViolator(index);
+	checkedItems[index] = newViolator.getScheduledItem();
 
 	for (PartnerUpdate partnerUpdate : update.getPartnerUpdates()) {
 	    partnerUpdate.partner.violationsContainer.updateValues(partnerUpdate.newContainerValues);
-	    if (violationsTree.remove(partnerUpdate.oldViolator)) {
-		violationsTree.add(partnerUpdate.updatedViolator);
+	    if (partnerUpdate.updatedViolator == null) {
+		// the partner is a fixed item
+		continue;
 	    }
-
-	    violationsMapping.put(partnerUpdate.updatedViolator.getScheduledItem().getItemToSchedule(), partnerUpdate.updatedViolator);
+	    storeViolator(partnerUpdate.partner.partnerIndex, partnerUpdate.updatedViolator);
 	}
 
-	// XXX maybe needed for fixed items?
-	// if (!violationsTree.remove(oldViolator)) {
-	// violationsTree.add(newViolator);
-	// }
+	storeViolator(index, newViolator);
 
-	violationsTree.remove(oldViolator);
-	violationsTree.add(newViolator);
+	// the violator values contain the single values of the item and the values of all its pairs, which are all the values that changed
+	planValues.hardViolationsValue += newViolator.getHardViolationsValue() - oldViolator.getHardViolationsValue();
+	planValues.softViolationsValue += newViolator.getSoftViolationsValue() - oldViolator.getSoftViolationsValue();
 
-	violationsMapping.put(itemToSchedule, newViolator);
-
-	predictor.itemWasMoved(itemToSchedule);
+	predictor.itemWasMoved(index);
     }
 
-    private void checkPairConstraints(ScheduledItem scheduledItem, SchedulePlan plan, Set<ConstraintPartner> partners,
-	    boolean updateConnected, ViolatorValues newValues, Violator violator) throws ViolatorUpdateInvalid {
+    private void checkPairConstraints(ScheduledItem scheduledItem, SchedulePlan plan, List<ConstraintPartner> partners,
+	    boolean updateConnected) {
 	for (ConstraintPartner partner : partners) {
-	    ScheduledItem partnerItem = plan.getScheduledItem(partner.getPartnerItem());
+	    ScheduledItem partnerItem = plan.getScheduledItem(partner.partnerIndex);
 	    ViolationsContainer container = partner.violationsContainer;
 
 	    ViolatorValues oldParterValues = null;
@@ -320,24 +924,7 @@ public class ViolationsManager {
 		oldParterValues = container.values;
 	    }
 
-	    List<ConstraintDecision> violations = new ArrayList<ConstraintDecision>(partner.getConstraints().size());
-	    for (ItemPairConstraint constraint : partner.getConstraints()) {
-		ConstraintDecision decision = constraint.check(scheduledItem, partnerItem);
-		if (!decision.isFulfilled()) {
-		    violations.add(decision);
-		    if (newValues != null) {
-			if (decision.isHardConstraint()) {
-			    newValues.hardViolationsValue += decision.getViolationValue();
-			}
-			else {
-			    newValues.softViolationsValue += decision.getViolationValue();
-			}
-
-			checkUpdateValid(violator, newValues.hardViolationsValue, newValues.softViolationsValue);
-		    }
-		}
-	    }
-	    container.updateValues(violations);
+	    container.updateValues(checkPair(scheduledItem, partnerItem, partner));
 
 	    if (updateConnected) {
 		/*
@@ -350,34 +937,109 @@ public class ViolationsManager {
 
     private void updatePartner(ConstraintPartner partner, ScheduledItem partnerItem, ViolationsContainer container,
 	    ViolatorValues oldParterValues) {
-	Violator partnerViolator = violationsMapping.get(partner.getPartnerItem());
-	if (partnerViolator != null) {
+	if (!fixedItems[partner.partnerIndex]) {
+	    Violator partnerViolator = getViolator(partner.partnerIndex);
 	    ViolatorValues newParterValues = container.values;
-	    if (!violationsTree.remove(partnerViolator)) { throw new SchedulingException("Fixed item?"); }
 	    int newHardValue = partnerViolator.getHardViolationsValue()
 		    + (newParterValues.hardViolationsValue - oldParterValues.hardViolationsValue);
 	    int newSoftValue = partnerViolator.getSoftViolationsValue()
 		    + (newParterValues.softViolationsValue - oldParterValues.softViolationsValue);
-	    Violator updatedViolator = new Violator(partnerItem, newHardValue, newSoftValue, this);
-	    violationsTree.add(updatedViolator);
-	    violationsMapping.put(partnerItem.getItemToSchedule(), updatedViolator);
+	    storeViolator(partner.partnerIndex, new Violator(partnerItem, partner.partnerIndex, newHardValue, newSoftValue, this));
 	}
     }
 
     private void checkUpdateValid(Violator violator, int newHardViolationsValue, int newSoftViolationsValue) throws ViolatorUpdateInvalid {
-	if (newHardViolationsValue > violator.getHardViolationsValue()
-		|| (newHardViolationsValue == violator.getHardViolationsValue() && newSoftViolationsValue > violator.getSoftViolationsValue())) { throw new ViolatorUpdateInvalid(); }
+	if (!isUpdateValid(violator, newHardViolationsValue, newSoftViolationsValue)) { throw new ViolatorUpdateInvalid(); }
     }
 
-    private void checkPairConstraints(ScheduledItem scheduledItem, SchedulePlan plan, Set<ConstraintPartner> partners,
-	    boolean updateConnected) {
-	try {
-	    checkPairConstraints(scheduledItem, plan, partners, updateConnected, null, null);
+    private boolean isUpdateValid(Violator violator, int newHardViolationsValue, int newSoftViolationsValue) {
+	return newHardViolationsValue < violator.getHardViolationsValue()
+		|| (newHardViolationsValue == violator.getHardViolationsValue() && newSoftViolationsValue <= violator.getSoftViolationsValue());
+    }
+
+    /**
+     * Checks the single constraint for the given item and adds the violation value to the given values. The built-in constraints are
+     * evaluated directly, all others through their interface.
+     * 
+     * @return {@code true} if the constraint is violated
+     */
+    private boolean addSingleViolation(ManagedSingleConstraint constraint, ScheduledItem item, ViolatorValues values) {
+	if (constraint.kernel == ConstraintKernel.START_NOW) {
+	    if (item.getStart() == 0) {
+		return false;
+	    }
+	    values.softViolationsValue += item.getStart() + item.getItemToSchedule().getDurationSummary();
+	    return true;
+	}
+	return addDecision(constraint.constraint.check(item), values);
+    }
+
+    /**
+     * Checks the pair constraint for the given item and its partner and adds the violation value to the given values. The built-in
+     * constraints are evaluated by the kernel of the pair, all others through their interface.
+     * 
+     * @return {@code true} if the constraint is violated
+     */
+    private boolean addPairViolation(ManagedPairConstraint constraint, ConstraintPartner partner, ScheduledItem item,
+	    ScheduledItem partnerItem, ViolatorValues values) {
+	if (constraint.kernel == ConstraintKernel.GENERIC) {
+	    return addDecision(check(constraint, item, partnerItem), values);
+	}
+	int value = checkKernel(constraint, partner, item.getStart(), partnerItem.getStart());
+	values.hardViolationsValue += value;
+	return value > 0;
+    }
+
+    /**
+     * @return the hard violation value of a built-in constraint or 0 if it is fulfilled
+     */
+    private int checkKernel(ManagedPairConstraint constraint, ConstraintPartner partner, int start, int partnerStart) {
+	int start1 = partner.first ? start : partnerStart;
+	int start2 = partner.first ? partnerStart : start;
+	if (constraint.kernel == ConstraintKernel.NO_OVERLAPPING) {
+	    return partner.kernel.checkNoOverlapping(start1, start2);
+	}
+	return partner.kernel.checkDependencies(start1, start2);
+    }
+
+    private static boolean addDecision(ConstraintDecision decision, ViolatorValues values) {
+	if (decision.isFulfilled()) {
+	    return false;
+	}
+	if (decision.isHardConstraint()) {
+	    values.hardViolationsValue += decision.getViolationValue();
 	}
-	catch (ViolatorUpdateInvalid e) {
-	    // XXX this should never happen!!
-	    throw new RuntimeException(e);
+	else {
+	    values.softViolationsValue += decision.getViolationValue();
 	}
+	return true;
+    }
+
+    /**
+     * Checks the pair constraint for the two given items. The decisions of translation invariant constraints are looked up in the cache
+     * first and are only calculated by the constraint if they are not known yet. For symmetric constraints, the item with the smaller id is
+     * always used as the first item of the cache key.
+     */
+    private ConstraintDecision check(ManagedPairConstraint constraint, ScheduledItem item1, ScheduledItem item2) {
+	if (!constraint.translationInvariant) {
+	    return constraint.constraint.check(item1, item2);
+	}
+
+	int offset = item2.getStart() - item1.getStart();
+	ItemToSchedule itemToSchedule1 = item1.getItemToSchedule();
+	ItemToSchedule itemToSchedule2 = item2.getItemToSchedule();
+	if (constraint.symmetric && itemToSchedule1.getId() > itemToSchedule2.getId()) {
+	    // both orders of a symmetric pair share the same cache entry
+	    itemToSchedule1 = item2.getItemToSchedule();
+	    itemToSchedule2 = item1.getItemToSchedule();
+	    offset = -offset;
+	}
+	ConstraintDecision decision = decisionCache.get(constraint.index, itemToSchedule1, itemToSchedule2, offset);
+	if (decision == null) {
+	    decision = constraint.constraint.check(item1, item2);
+	    decisionCache.put(constraint.index, itemToSchedule1, itemToSchedule2, offset, decision);
+	}
+	return decision;
     }
 
     /**
@@ -396,98 +1058,243 @@ public class ViolationsManager {
 
     public Collection<ScheduledItem> getHardViolatedItems(ScheduledItem itemToCheck, SchedulePlan plan) {
 	Collection<ScheduledItem> violatedItems = new ArrayList<ScheduledItem>();
-	for (ConstraintPartner constraintPartner : constraintMap.get(itemToCheck.getItemToSchedule())) {
-	    ScheduledItem constraintItem = plan.getScheduledItem(constraintPartner.partnerItem);
-	    for (ItemPairConstraint constraint : constraintPartner.constraints) {
-		ConstraintDecision decision = constraint.check(itemToCheck, constraintItem);
+	for (ConstraintPartner constraintPartner : constraintPartners[itemIndex.indexOf(itemToCheck.getItemToSchedule())]) {
+	    ScheduledItem constraintItem = plan.getScheduledItem(constraintPartner.partnerIndex);
+	    if (isHardViolated(constraintPartner, itemToCheck, constraintItem)) {
+		violatedItems.add(constraintItem);
+	    }
+	}
+	return violatedItems;
+    }
+
+    /**
+     * Collects all items that violate a hard constraint together with at least one of the given items. Every partner is only checked until
+     * the first hard violation is found, and partners that are already part of the result are not checked at all.
+     * 
+     * @param items
+     *            the indexes of the items to check, at their positions in the given plan
+     * @param plan
+     *            the plan containing the items. It has to use the same {@link ItemIndex} as the plan of the manager.
+     * @param violatedItems
+     *            the indexes of the violated items are added to this set
+     */
+    public void collectHardViolatedItems(BitSet items, SchedulePlan plan, BitSet violatedItems) {
+	for (int item = items.nextSetBit(0); item >= 0; item = items.nextSetBit(item + 1)) {
+	    ScheduledItem itemToCheck = plan.getScheduledItem(item);
+	    for (ConstraintPartner partner : constraintPartners[item]) {
+		if (!violatedItems.get(partner.partnerIndex)
+			&& isHardViolated(partner, itemToCheck, plan.getScheduledItem(partner.partnerIndex))) {
+		    violatedItems.set(partner.partnerIndex);
+		}
+	    }
+	}
+    }
+
+    private boolean isHardViolated(ConstraintPartner partner, ScheduledItem item, ScheduledItem partnerItem) {
+	for (ManagedPairConstraint constraint : partner.constraints) {
+	    if (constraint.kernel == ConstraintKernel.GENERIC) {
+		ConstraintDecision decision = check(constraint, item, partnerItem);
 		if (!decision.isFulfilled() && decision.isHardConstraint()) {
-		    violatedItems.add(constraintItem);
+		    return true;
 		}
 	    }
+	    else if (checkKernel(constraint, partner, item.getStart(), partnerItem.getStart()) > 0) {
+		return true;
+	    }
 	}
-	return violatedItems;
+	return false;
     }
 
     protected class ConstraintPartner {
+	private final int partnerIndex;
 	private final ItemToSchedule partnerItem;
 	protected final ViolationsContainer violationsContainer;
-	private final List<ItemPairConstraint> constraints;
-
-	public ConstraintPartner(ItemToSchedule partnerItem, ViolationsContainer violationsContainer, List<ItemPairConstraint> constraints) {
+	private final List<ManagedPairConstraint> constraints;
+	private final PairKernel kernel;
+	private final boolean first;
+	private final int slot;
+	private final int partnerSlot;
+	private final boolean symmetric;
+	private int rejections;
+	private int constraintOrderVersion;
+
+	/**
+	 * @param partnerIndex
+	 *            the index of the partner item
+	 * @param partnerItem
+	 *            the partner item
+	 * @param violationsContainer
+	 *            the container shared by both partners of the pair
+	 * @param constraints
+	 *            the constraints that have to be checked for the pair
+	 * @param kernel
+	 *            the kernel for the built-in constraints of the pair, shared by both partners. It is {@code null} if the pair has no
+	 *            built-in constraints.
+	 * @param first
+	 *            {@code true} if the item is the first item of the kernel
+	 * @param slot
+	 *            the position this partner had when the partners of the item were created. It does not change when the partners are
+	 *            reordered.
+	 * @param partnerSlot
+	 *            the slot of the opposite partner, which points from the partner item back to the item
+	 */
+	public ConstraintPartner(int partnerIndex, ItemToSchedule partnerItem, ViolationsContainer violationsContainer,
+		List<ManagedPairConstraint> constraints, PairKernel kernel, boolean first, int slot, int partnerSlot) {
+	    this.partnerIndex = partnerIndex;
 	    this.partnerItem = partnerItem;
 	    this.violationsContainer = violationsContainer;
 	    this.constraints = constraints;
+	    this.kernel = kernel;
+	    this.first = first;
+	    this.slot = slot;
+	    this.partnerSlot = partnerSlot;
+	    boolean allSymmetric = true;
+	    for (ManagedPairConstraint constraint : constraints) {
+		allSymmetric &= constraint.symmetric;
+	    }
+	    symmetric = allSymmetric;
 	}
 
-	public List<ItemPairConstraint> getConstraints() {
+	public List<ManagedPairConstraint> getConstraints() {
 	    return constraints;
 	}
 
+	private void orderConstraints() {
+	    if (constraintOrderVersion == ViolationsManager.this.constraintOrderVersion) {
+		return;
+	    }
+	    Collections.sort(constraints, new Comparator<ManagedPairConstraint>() {
+		@Override
+		public int compare(ManagedPairConstraint o1, ManagedPairConstraint o2) {
+		    return Double.compare(o1.costPerViolation, o2.costPerViolation);
+		}
+	    });
+	    constraintOrderVersion = ViolationsManager.this.constraintOrderVersion;
+	}
+
 	public ItemToSchedule getPartnerItem() {
 	    return partnerItem;
 	}
+
+	public int getPartnerIndex() {
+	    return partnerIndex;
+	}
+
+	public int getSlot() {
+	    return slot;
+	}
+
+	public int getPartnerSlot() {
+	    return partnerSlot;
+	}
+
+	/**
+	 * @return {@code true} if all constraints of this pair are symmetric, so the order of the items does not matter
+	 */
+	public boolean isSymmetric() {
+	    return symmetric;
+	}
+    }
+
+    /**
+     * Wraps a pair constraint together with the information the manager needs to check it efficiently.
+     */
+    protected class ManagedPairConstraint {
+	private final ItemPairConstraint constraint;
+	private final int index;
+	private final boolean translationInvariant;
+	private final boolean symmetric;
+	private final boolean laneBased;
+	private final ConstraintKernel kernel;
+	private final ConstraintStatistics statistics;
+	private double costPerViolation;
+
+	/**
+	 * The result of needsChecking for all pairs of lane signatures of the current plan, if the constraint is lane based. Otherwise it
+	 * is {@code null}.
+	 */
+	private BitSet[] matchingSignatures;
+
+	public ManagedPairConstraint(ItemPairConstraint constraint, int index) {
+	    this.constraint = constraint;
+	    this.index = index;
+	    translationInvariant = constraint instanceof TranslationInvariantConstraint;
+	    symmetric = constraint instanceof SymmetricConstraint;
+	    laneBased = constraint instanceof LaneBasedConstraint;
+	    // subclasses of the built-in constraints might change their behavior, so they are checked through the interface
+	    if (constraint.getClass() == NoOverlappingConstraint.class) {
+		kernel = ConstraintKernel.NO_OVERLAPPING;
+	    }
+	    else if (constraint.getClass() == DependenciesConstraint.class) {
+		kernel = ConstraintKernel.DEPENDENCIES;
+	    }
+	    else {
+		kernel = ConstraintKernel.GENERIC;
+	    }
+	    statistics = new ConstraintStatistics();
+	}
+
+	public ItemPairConstraint getConstraint() {
+	    return constraint;
+	}
+    }
+
+    /**
+     * Wraps a single item constraint together with its evaluation statistics.
+     */
+    protected class ManagedSingleConstraint {
+	private final SingleItemConstraint constraint;
+	private final ConstraintKernel kernel;
+	private final ConstraintStatistics statistics;
+	private double costPerViolation;
+
+	public ManagedSingleConstraint(SingleItemConstraint constraint) {
+	    this.constraint = constraint;
+	    kernel = constraint.getClass() == StartNowConstraint.class ? ConstraintKernel.START_NOW : ConstraintKernel.GENERIC;
+	    statistics = new ConstraintStatistics();
+	}
+    }
+
+    /**
+     * The built-in constraints the manager evaluates directly instead of calling them through their interface.
+     */
+    private enum ConstraintKernel {
+	GENERIC, NO_OVERLAPPING, DEPENDENCIES, START_NOW
     }
 
     protected class ViolationsContainer {
 	protected final ViolatorValues values;
 
-	public ViolationsContainer(List<ConstraintDecision> violations) {
+	public ViolationsContainer() {
 	    values = new ViolatorValues();
-	    updateValues(violations);
 	}
 
 	public void updateValues(ViolatorValues newContainerValues) {
 	    values.hardViolationsValue = newContainerValues.hardViolationsValue;
 	    values.softViolationsValue = newContainerValues.softViolationsValue;
 	}
-
-	public final void updateValues(List<ConstraintDecision> violations) {
-	    values.hardViolationsValue = 0;
-	    values.softViolationsValue = 0;
-	    for (ConstraintDecision decision : violations) {
-		if (!decision.isFulfilled()) {
-		    if (decision.isHardConstraint()) {
-			values.hardViolationsValue += decision.getViolationValue();
-		    }
-		    else {
-			values.softViolationsValue += decision.getViolationValue();
-		    }
-		}
-	    }
-	}
     }
 
+    /**
+     * Checks all constraints for all items of the given plan and sums up their violations. Every pair of items is counted once.
+     * 
+     * @param plan
+     *            the plan to check
+     * @return the summarized violation values of the plan
+     */
     public ViolatorValues checkViolationsForPlan(SchedulePlan plan) {
 	ViolatorValues planValues = new ViolatorValues();
 
-	// TODO: pair-violations are counted twice
-	for (ScheduledItem itemToCheck : plan.getScheduledItems()) {
-	    for (SingleItemConstraint constraint : singleConstraints) {
-		ConstraintDecision decision = constraint.check(itemToCheck);
-		if (!decision.isFulfilled()) {
-		    if (decision.isHardConstraint()) {
-			planValues.hardViolationsValue += decision.getViolationValue();
-		    }
-		    else {
-			planValues.softViolationsValue += decision.getViolationValue();
-		    }
-		}
-	    }
+	for (int i = 0; i < constraintPartners.length; i++) {
+	    ScheduledItem itemToCheck = plan.getScheduledItem(i);
+	    addValues(planValues, checkSingleConstraints(itemToCheck), 1);
 
-	    Set<ConstraintPartner> partners = constraintMap.get(itemToCheck.getItemToSchedule());
-	    for (ConstraintPartner partner : partners) {
-		ScheduledItem partnerItem = plan.getScheduledItem(partner.getPartnerItem());
-		for (ItemPairConstraint constraint : partner.getConstraints()) {
-		    ConstraintDecision decision = constraint.check(itemToCheck, partnerItem);
-		    if (!decision.isFulfilled()) {
-			if (decision.isHardConstraint()) {
-			    planValues.hardViolationsValue += decision.getViolationValue();
-			}
-			else {
-			    planValues.softViolationsValue += decision.getViolationValue();
-			}
-		    }
+	    for (ConstraintPartner partner : constraintPartners[i]) {
+		if (partner.partnerIndex < i) {
+		    // the pair has already been checked by the partner
+		    continue;
 		}
+		addValues(planValues, checkPair(itemToCheck, plan.getScheduledItem(partner.partnerIndex), partner), 1);
 	    }
 	}
 
@@ -495,48 +1302,232 @@ public class ViolationsManager {
     }
 
     public ViolatorValues checkViolationsForItem(ScheduledItem itemToCheck, SchedulePlan plan) {
+	ViolatorValues values = checkSingleConstraints(itemToCheck);
+
+	for (ConstraintPartner partner : constraintPartners[itemIndex.indexOf(itemToCheck.getItemToSchedule())]) {
+	    ScheduledItem partnerItem = plan.getScheduledItem(partner.partnerIndex);
+	    if (partnerItem == null) {
+		// the partnerItem can be null if it has been removed from the plan
+		continue;
+	    }
+	    addValues(values, checkPair(itemToCheck, partnerItem, partner), 1);
+	}
+	return values;
+    }
+
+    /**
+     * Informs the manager that the plan it works on has been replaced by {@code newPlan}, which is derived from {@code oldPlan}. Only the
+     * pairs that contain an item whose start changed are checked again, the violators of all other items are kept as they are.
+     * 
+     * @param oldPlan
+     *            the plan the manager has been working on so far
+     * @param newPlan
+     *            the plan that replaces the old one
+     */
+    public void planHasBeenUpdated(SchedulePlan oldPlan, SchedulePlan newPlan) {
+	stateVersion++;
+	int[] movedItems = getMovedItems(oldPlan, newPlan);
+	ViolatorValues newPlanValues = calculatePlanValues(newPlan);
+
+	updateMovedItems(movedItems, newPlan);
+	predictor.planHasBeenUpdated(newPlan, movedItems);
+
+	plan = newPlan;
+	planValues.hardViolationsValue = newPlanValues.hardViolationsValue;
+	planValues.softViolationsValue = newPlanValues.softViolationsValue;
+    }
+
+    /**
+     * @return the indexes of the items whose start differs between the two plans in ascending order. The plans are usually clones of each
+     *         other, so the diff of the plans only looks at the changed parts.
+     */
+    private int[] getMovedItems(SchedulePlan oldPlan, SchedulePlan newPlan) {
+	PlanDiff diff = oldPlan.diff(newPlan);
+	int[] movedItems = new int[diff.getAddedItems().size() + diff.getMovedItems().size()];
+	int count = 0;
+	for (ScheduledItem addedItem : diff.getAddedItems()) {
+	    movedItems[count++] = itemIndex.indexOf(addedItem.getItemToSchedule());
+	}
+	for (PlanDiff.Move move : diff.getMovedItems()) {
+	    movedItems[count++] = itemIndex.indexOf(move.getNewItem().getItemToSchedule());
+	}
+	Arrays.sort(movedItems);
+	return movedItems;
+    }
+
+    /**
+     * Calculates the sum of all constraint violations of the given plan. The plan must contain the same items as the plan the manager is
+     * working on. Instead of checking the whole plan again, the values are derived from the values of the current plan by only checking the
+     * items that have been moved and their partners, so the costs depend on the number of moved items and not on the size of the plan.
+     * 
+     * @param otherPlan
+     *            the plan to calculate the violation values for
+     * @return the summarized violation values of the plan
+     */
+    public ViolatorValues calculatePlanValues(SchedulePlan otherPlan) {
 	ViolatorValues values = new ViolatorValues();
+	addValues(values, planValues, 1);
+	if (otherPlan == plan) {
+	    return values;
+	}
 
-	for (SingleItemConstraint constraint : singleConstraints) {
-	    ConstraintDecision decision = constraint.check(itemToCheck);
-	    if (!decision.isFulfilled()) {
-		if (decision.isHardConstraint()) {
-		    values.hardViolationsValue += decision.getViolationValue();
+	int[] movedItems = getMovedItems(plan, otherPlan);
+	boolean[] moved = new boolean[itemIndex.size()];
+	for (int movedItem : movedItems) {
+	    moved[movedItem] = true;
+	}
+	for (int movedItem : movedItems) {
+	    ScheduledItem newItem = otherPlan.getScheduledItem(movedItem);
+	    addValues(values, checkSingleConstraints(plan.getScheduledItem(movedItem)), -1);
+	    addValues(values, checkSingleConstraints(newItem), 1);
+
+	    for (ConstraintPartner partner : constraintPartners[movedItem]) {
+		// a pair of two moved items is checked only once
+		if (!moved[partner.partnerIndex] || partner.partnerIndex > movedItem) {
+		    addValues(values, partner.violationsContainer.values, -1);
+		    addValues(values, checkPair(newItem, otherPlan.getScheduledItem(partner.partnerIndex), partner), 1);
 		}
-		else {
-		    values.softViolationsValue += decision.getViolationValue();
+	    }
+	}
+	return values;
+    }
+
+    protected ViolatorValues checkSingleConstraints(ScheduledItem item) {
+	ViolatorValues values = new ViolatorValues();
+	for (ManagedSingleConstraint constraint : managedSingleConstraints) {
+	    addSingleViolation(constraint, item, values);
+	}
+	return values;
+    }
+
+    private ViolatorValues checkPair(ScheduledItem item, ScheduledItem partnerItem, ConstraintPartner partner) {
+	ViolatorValues values = new ViolatorValues();
+	for (ManagedPairConstraint constraint : partner.getConstraints()) {
+	    addPairViolation(constraint, partner, item, partnerItem, values);
+	}
+	return values;
+    }
+
+    private void updateMovedItems(int[] movedItems, SchedulePlan plan) {
+	boolean[] moved = new boolean[itemIndex.size()];
+	for (int movedItem : movedItems) {
+	    moved[movedItem] = true;
+	    checkedItems[movedItem] = plan.getScheduledItem(movedItem);
+	}
+	boolean[] affectedItems = moved.clone();
+	for (int movedItem : movedItems) {
+	    List<ConstraintPartner> partnersToCheck = new ArrayList<ConstraintPartner>();
+	    for (ConstraintPartner partner : constraintPartners[movedItem]) {
+		// the containers are shared by both partners of a pair, so every pair has to be checked only once
+		if (!moved[partner.partnerIndex] || partner.partnerIndex > movedItem) {
+		    partnersToCheck.add(partner);
 		}
+		affectedItems[partner.partnerIndex] = true;
 	    }
+	    checkPairConstraints(plan.getScheduledItem(movedItem), plan, partnersToCheck, false);
 	}
 
-	Set<ConstraintPartner> partners = constraintMap.get(itemToCheck.getItemToSchedule());
-	for (ConstraintPartner partner : partners) {
-	    ScheduledItem partnerItem = plan.getScheduledItem(partner.getPartnerItem());
-	    if (partnerItem == null) {
-		// the partnerItem can be null if it has been removed from the plan
-		continue;
+	for (int i = 0; i < affectedItems.length; i++) {
+	    // fixed items are not part of the violations tree
+	    if (affectedItems[i] && !fixedItems[i]) {
+		storeViolator(i, createViolator(i, plan.getScheduledItem(i)));
 	    }
-	    for (ItemPairConstraint constraint : partner.getConstraints()) {
-		ConstraintDecision decision = constraint.check(itemToCheck, partnerItem);
-		if (!decision.isFulfilled()) {
-		    if (decision.isHardConstraint()) {
-			values.hardViolationsValue += decision.getViolationValue();
-		    }
-		    else {
-			values.softViolationsValue += decision.getViolationValue();
-		    }
+	}
+    }
+
+    /**
+     * Creates a snapshot of the size of the constraint graph of the current plan. Every pair of items is visited once, so the snapshot
+     * should only be taken after {@link #initialize(SchedulePlan)} and not during the scheduling.
+     * 
+     * @return the statistics of the constraint graph
+     */
+    public ConstraintGraphStatistics getGraphStatistics() {
+	if (constraintPartners == null) {
+	    throw new IllegalStateException("The manager has not been initialized yet.");
+	}
+	int[] pairsPerConstraint = new int[managedPairConstraints.size()];
+	int[] degreeHistogram = new int[33];
+	int fixedItemCount = 0;
+	int pairCount = 0;
+	int pairsWithFixedItem = 0;
+	int pairsOfFixedItems = 0;
+	int maxDegree = 0;
+	for (int i = 0; i < constraintPartners.length; i++) {
+	    int degree = constraintPartners[i].length;
+	    maxDegree = Math.max(maxDegree, degree);
+	    degreeHistogram[32 - Integer.numberOfLeadingZeros(degree)]++;
+	    if (fixedItems[i]) {
+		fixedItemCount++;
+	    }
+	    for (ConstraintPartner partner : constraintPartners[i]) {
+		// every pair is stored for both of its items
+		if (partner.partnerIndex < i) {
+		    continue;
+		}
+		pairCount++;
+		if (fixedItems[i] && fixedItems[partner.partnerIndex]) {
+		    pairsOfFixedItems++;
+		}
+		else if (fixedItems[i] || fixedItems[partner.partnerIndex]) {
+		    pairsWithFixedItem++;
+		}
+		for (ManagedPairConstraint constraint : partner.constraints) {
+		    pairsPerConstraint[constraint.index]++;
 		}
 	    }
 	}
-	return values;
+
+	Map<ItemPairConstraint, Integer> constraintPairs = new LinkedHashMap<ItemPairConstraint, Integer>();
+	for (ManagedPairConstraint constraint : managedPairConstraints) {
+	    constraintPairs.put(constraint.constraint, pairsPerConstraint[constraint.index]);
+	}
+	int histogramLength = 32 - Integer.numberOfLeadingZeros(maxDegree) + 1;
+	int predictionBlocks = usingPrediction && constraintPartners.length > 0 ? predictor.getBlockCount() : 0;
+	return new ConstraintGraphStatistics(constraintPartners.length, fixedItemCount, pairCount, pairsWithFixedItem, pairsOfFixedItems,
+		maxDegree, Arrays.copyOf(degreeHistogram, histogramLength), constraintPairs, predictionBlocks);
     }
 
-    public void planHasBeenUpdated(SchedulePlan oldPlan, SchedulePlan newPlan) {
-	// TODO: improve the update
-	violationsTree.clear();
-	initializeViolationTree(newPlan);
+    /**
+     * @return {@code true} if the only pair constraints are the built-in {@link NoOverlappingConstraint} and
+     *         {@link DependenciesConstraint}. In that case an item placed into a free gap of its lanes after the end of its required items
+     *         does not violate any pair constraint.
+     */
+    public boolean isOnlyCheckingLanesAndDependencies() {
+	for (ItemPairConstraint constraint : pairConstraints) {
+	    if (constraint.getClass() != NoOverlappingConstraint.class && constraint.getClass() != DependenciesConstraint.class) {
+		return false;
+	    }
+	}
+	return true;
+    }
 
-	predictor.planHasBeenUpdated(oldPlan, newPlan);
+    /**
+     * @return the single constraints in the order in which they are currently evaluated
+     */
+    protected List<SingleItemConstraint> getSingleConstraintOrder() {
+	List<SingleItemConstraint> order = new ArrayList<SingleItemConstraint>(managedSingleConstraints.size());
+	for (ManagedSingleConstraint constraint : managedSingleConstraints) {
+	    order.add(constraint.constraint);
+	}
+	return order;
+    }
+
+    /**
+     * @return {@code true} if the constraints are ordered by their statistics during the scheduling
+     */
+    public boolean isReorderingConstraints() {
+	return reorderingConstraints;
+    }
+
+    /**
+     * Controls if the constraints and the partners of the items are ordered by their statistics every {@value #REORDER_INTERVAL} checked
+     * candidates. The order does not change the result of the scheduling, only the time it takes to reject a bad candidate.
+     * 
+     * @param reorderingConstraints
+     *            {@code true} if the constraints should be reordered
+     */
+    public void setReorderingConstraints(boolean reorderingConstraints) {
+	this.reorderingConstraints = reorderingConstraints;
     }
 
     public boolean isUsingPrediction() {
@@ -546,4 +1537,63 @@ public class ViolationsManager {
     public void setUsingPrediction(boolean usingPrediction) {
 	this.usingPrediction = usingPrediction;
     }
+
+    /**
+     * @return {@code true} if big plans are initialized by several threads
+     */
+    public boolean isInitializingInParallel() {
+	return initializingInParallel;
+    }
+
+    /**
+     * Controls if the pairs of big plans are checked by several threads during the initialization. This is disabled by default, as all
+     * constraints have to be thread safe to enable it. The built-in constraints are thread safe.
+     * 
+     * @param initializingInParallel
+     *            {@code true} if big plans should be initialized in parallel
+     */
+    public void setInitializingInParallel(boolean initializingInParallel) {
+	this.initializingInParallel = initializingInParallel;
+    }
+
+    /**
+     * @return {@code true} if the {@link UpdateableConstraint}s are updated in the background, {@code false} if every initialization waits
+     *         for their updates
+     */
+    public boolean isUpdatingInBackground() {
+	return updatingInBackground;
+    }
+
+    /**
+     * Controls if the initialization waits for the updates of the {@link UpdateableConstraint}s. By default, the initialization waits until
+     * all constraints are updated. If the updates are run in the background, the initialization only starts the updates of the
+     * {@link VersionedConstraint}s and uses the data of their last completed update for the whole run. The first update of a constraint and
+     * the updates of the other updateable constraints are always waited for. This is disabled by default, as the versioned constraints are
+     * updated by other threads while the scheduler uses them.
+     * 
+     * @param updatingInBackground
+     *            {@code true} if the constraints should be updated in the background
+     */
+    public void setUpdatingInBackground(boolean updatingInBackground) {
+	this.updatingInBackground = updatingInBackground;
+    }
+
+    /**
+     * @return {@code true} if the {@link UpdateableConstraint}s are updated in parallel, {@code false} if they are updated one after
+     *         another by the initializing thread
+     */
+    public boolean isUpdatingInParallel() {
+	return constraintUpdater.isUpdatingInParallel();
+    }
+
+    /**
+     * Controls if the {@link UpdateableConstraint}s are updated by several threads at the same time. This is disabled by default, as the
+     * updates of all constraints have to be able to run at the same time on other threads to enable it.
+     * 
+     * @param updatingInParallel
+     *            {@code true} if the constraints should be updated in parallel
+     */
+    public void setUpdatingInParallel(boolean updatingInParallel) {
+	constraintUpdater.setUpdatingInParallel(updatingInParallel);
+    }
 }
@@ -17,51 +17,37 @@
 
 package cern.acctesting.service.schedule.impl;
 
-import java.util.Set;
-
 import cern.acctesting.service.schedule.ScheduledItem;
-import cern.acctesting.service.schedule.constraint.ConstraintDecision;
-import cern.acctesting.service.schedule.constraint.SingleItemConstraint;
 import cern.acctesting.service.schedule.impl.ViolationsManager.ConstraintPartner;
 
 public class Violator implements Comparable<Violator> {
 	private final ScheduledItem scheduledItem;
+	private final int itemIndex;
 	private int hardViolationsValue;
 	private int softViolationsValue;
 	private ViolationsManager manager;
 
-	protected Violator(ScheduledItem scheduledItem, ViolationsManager manager) {
+	protected Violator(ScheduledItem scheduledItem, int itemIndex, ViolationsManager manager) {
 	    this.scheduledItem = scheduledItem;
+	    this.itemIndex = itemIndex;
 	    this.manager = manager;
 	    checkSingleConstraints();
 	    getPairConstraintDecisions();
 	}
 
-	protected Violator(ScheduledItem scheduledItem, int hardViolationsValue, int softViolationsValue, ViolationsManager manager) {
+	protected Violator(ScheduledItem scheduledItem, int itemIndex, int hardViolationsValue, int softViolationsValue,
+		ViolationsManager manager) {
 	    this.scheduledItem = scheduledItem;
+	    this.itemIndex = itemIndex;
 	    this.hardViolationsValue = hardViolationsValue;
 	    this.softViolationsValue = softViolationsValue;
 	}
 
-	private void aggregate(ConstraintDecision decision) {
-	    if (!decision.isFulfilled()) {
-		if (decision.isHardConstraint()) {
-		    hardViolationsValue += decision.getViolationValue();
-		}
-		else {
-		    softViolationsValue += decision.getViolationValue();
-		}
-	    }
-	}
-
 	private void getPairConstraintDecisions() {
-	    Set<ConstraintPartner> partners = manager.constraintMap.get(scheduledItem.getItemToSchedule());
-	    if (partners != null && !partners.isEmpty()) {
-		checkPartnerConstraints(partners);
-	    }
+	    checkPartnerConstraints(manager.constraintPartners[itemIndex]);
 	}
 
-	private void checkPartnerConstraints(Set<ConstraintPartner> partners) {
+	private void checkPartnerConstraints(ConstraintPartner[] partners) {
 	    for (ConstraintPartner partner : partners) {
 		ViolatorValues partnerValues = partner.violationsContainer.values;
 		hardViolationsValue += partnerValues.hardViolationsValue;
@@ -70,9 +56,9 @@ public class Violator implements Comparable<Violator> {
 	}
 
 	private void checkSingleConstraints() {
-	    for (SingleItemConstraint constraint : manager.singleConstraints) {
-		aggregate(constraint.check(scheduledItem));
-	    }
+	    ViolatorValues values = manager.checkSingleConstraints(scheduledItem);
+	    hardViolationsValue += values.hardViolationsValue;
+	    softViolationsValue += values.softViolationsValue;
 	}
 
 	@Override
@@ -115,6 +101,13 @@ public class Violator implements Comparable<Violator> {
 	    return scheduledItem;
 	}
 
+	/**
+	 * @return the index of the item in the {@link ItemIndex} of the plan
+	 */
+	public int getItemIndex() {
+	    return itemIndex;
+	}
+
 	public int getHardViolationsValue() {
 	    return hardViolationsValue;
 	}
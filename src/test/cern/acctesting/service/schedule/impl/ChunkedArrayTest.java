@@ -0,0 +1,90 @@
+// @formatter:off
+ /*******************************************************************************
+ *
+ * This file is part of JScheduleX.
+ * 
+ * Copyright (c) 2012 CERN.
+ *
+ * This software is distributed under the terms of the GNU Lesser General
+ * Public Licence version 3 (LGPL Version 3), copied verbatim in the file COPYING
+ * 
+ * In applying this licence, CERN does not waive the privileges and immunities
+ * granted to it by virtue of its status as an Intergovernmental Organization
+ * or submit itself to any jurisdiction.
+ * 
+ ******************************************************************************/
+// @formatter:on
+
+
+package cern.acctesting.service.schedule.impl;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class ChunkedArrayTest {
+
+    @Test
+    public void testAddAndSet() {
+        ChunkedArray<Integer> array = new ChunkedArray<Integer>();
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(i, array.add(i));
+        }
+        array.set(500, -1);
+
+        assertEquals(1000, array.size());
+        assertEquals(-1, array.get(500).intValue());
+        assertEquals(999, array.get(999).intValue());
+    }
+
+    @Test
+    public void testCopiesAreIndependent() {
+        ChunkedArray<Integer> array = new ChunkedArray<Integer>();
+        for (int i = 0; i < 200; i++) {
+            array.add(i);
+        }
+        ChunkedArray<Integer> copy = new ChunkedArray<Integer>(array);
+        ChunkedArray<Integer> secondCopy = new ChunkedArray<Integer>(copy);
+
+        array.set(10, -1);
+        copy.set(10, -2);
+        copy.add(200);
+        array.set(150, -3);
+
+        assertEquals(-1, array.get(10).intValue());
+        assertEquals(-2, copy.get(10).intValue());
+        assertEquals(10, secondCopy.get(10).intValue());
+        assertEquals(150, copy.get(150).intValue());
+        assertEquals(150, secondCopy.get(150).intValue());
+        assertEquals(200, array.size());
+        assertEquals(201, copy.size());
+        assertEquals(200, secondCopy.size());
+    }
+
+    @Test
+    public void testNextDifference() {
+        ChunkedArray<Integer> array = new ChunkedArray<Integer>();
+        for (int i = 0; i < 200; i++) {
+            array.add(i);
+        }
+        ChunkedArray<Integer> copy = new ChunkedArray<Integer>(array);
+        assertEquals(-1, array.nextDifference(copy, 0));
+
+        copy.set(70, array.get(70));
+        copy.set(130, -1);
+        array.set(5, -2);
+        copy.add(200);
+        assertEquals(5, array.nextDifference(copy, 0));
+        assertEquals(130, array.nextDifference(copy, 6));
+        assertEquals(200, array.nextDifference(copy, 131));
+        assertEquals(200, copy.nextDifference(array, 131));
+        assertEquals(-1, array.nextDifference(copy, 201));
+    }
+
+    @Test(expected = ArrayIndexOutOfBoundsException.class)
+    public void testGetOutOfBounds() {
+        ChunkedArray<Integer> array = new ChunkedArray<Integer>();
+        array.add(1);
+        array.get(1);
+    }
+}
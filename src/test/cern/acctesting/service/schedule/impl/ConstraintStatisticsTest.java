@@ -0,0 +1,96 @@
+// @formatter:off
+ /*******************************************************************************
+ *
+ * This file is part of JScheduleX.
+ * 
+ * Copyright (c) 2012 CERN.
+ *
+ * This software is distributed under the terms of the GNU Lesser General
+ * Public Licence version 3 (LGPL Version 3), copied verbatim in the file COPYING
+ * 
+ * In applying this licence, CERN does not waive the privileges and immunities
+ * granted to it by virtue of its status as an Intergovernmental Organization
+ * or submit itself to any jurisdiction.
+ * 
+ ******************************************************************************/
+// @formatter:on
+
+package cern.acctesting.service.schedule.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class ConstraintStatisticsTest {
+
+    /**
+     * Evaluates the constraint the given number of times. The sampled evaluations pretend to have taken the given time.
+     */
+    private static void evaluate(ConstraintStatistics statistics, int evaluations, int violations, long nanos) {
+        for (int i = 0; i < evaluations; i++) {
+            statistics.finishEvaluation(pretendDuration(statistics.startEvaluation(), nanos), i < violations);
+        }
+    }
+
+    private static long pretendDuration(long start, long nanos) {
+        return start == ConstraintStatistics.NOT_SAMPLED ? start : start - nanos;
+    }
+
+    @Test
+    public void testCounters() {
+        ConstraintStatistics statistics = new ConstraintStatistics();
+        evaluate(statistics, 100, 30, 10);
+        assertEquals(100, statistics.getEvaluations());
+        assertEquals(30, statistics.getViolations());
+    }
+
+    @Test
+    public void testCostPerViolationRanking() {
+        ConstraintStatistics cheapAndOftenViolated = new ConstraintStatistics();
+        ConstraintStatistics cheapAndRarelyViolated = new ConstraintStatistics();
+        ConstraintStatistics expensiveAndOftenViolated = new ConstraintStatistics();
+        evaluate(cheapAndOftenViolated, 1000, 500, 1000);
+        evaluate(cheapAndRarelyViolated, 1000, 5, 1000);
+        evaluate(expensiveAndOftenViolated, 1000, 500, 10000);
+
+        assertTrue(cheapAndOftenViolated.getCostPerViolation() < cheapAndRarelyViolated.getCostPerViolation());
+        assertTrue(cheapAndOftenViolated.getCostPerViolation() < expensiveAndOftenViolated.getCostPerViolation());
+        // a constraint that is ten times as expensive but a hundred times more often violated is evaluated first
+        assertTrue(expensiveAndOftenViolated.getCostPerViolation() < cheapAndRarelyViolated.getCostPerViolation());
+    }
+
+    @Test
+    public void testOnlySampledEvaluationsAreTimed() {
+        ConstraintStatistics statistics = new ConstraintStatistics();
+        int sampled = 0;
+        for (int i = 0; i < 64; i++) {
+            if (statistics.startEvaluation() != ConstraintStatistics.NOT_SAMPLED) {
+                sampled++;
+            }
+        }
+        assertEquals(2, sampled);
+    }
+
+    @Test
+    public void testOverlappingEvaluations() {
+        ConstraintStatistics statistics = new ConstraintStatistics();
+        ConstraintStatistics reference = new ConstraintStatistics();
+        for (int i = 0; i < 32; i++) {
+            // every sampled evaluation is finished after an unsampled one that started later
+            long first = statistics.startEvaluation();
+            long second = statistics.startEvaluation();
+            statistics.finishEvaluation(pretendDuration(second, 1000000), true);
+            statistics.finishEvaluation(pretendDuration(first, 1000000), true);
+            evaluate(reference, 2, 2, 1000000);
+        }
+        assertEquals(reference.getCostPerViolation(), statistics.getCostPerViolation(), reference.getCostPerViolation() * 0.1);
+    }
+
+    @Test
+    public void testUnknownConstraint() {
+        ConstraintStatistics statistics = new ConstraintStatistics();
+        // one nanosecond per evaluation and every second evaluation violated
+        assertEquals(2, statistics.getCostPerViolation(), 0.0001);
+    }
+}
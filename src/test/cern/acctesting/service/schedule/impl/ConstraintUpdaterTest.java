@@ -0,0 +1,281 @@
+// @formatter:off
+ /*******************************************************************************
+ *
+ * This file is part of JScheduleX.
+ * 
+ * Copyright (c) 2012 CERN.
+ *
+ * This software is distributed under the terms of the GNU Lesser General
+ * Public Licence version 3 (LGPL Version 3), copied verbatim in the file COPYING
+ * 
+ * In applying this licence, CERN does not waive the privileges and immunities
+ * granted to it by virtue of its status as an Intergovernmental Organization
+ * or submit itself to any jurisdiction.
+ * 
+ ******************************************************************************/
+// @formatter:on
+
+
+package cern.acctesting.service.schedule.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import cern.acctesting.service.schedule.ItemToSchedule;
+import cern.acctesting.service.schedule.Lane;
+import cern.acctesting.service.schedule.ScheduledItem;
+import cern.acctesting.service.schedule.constraint.ConstraintDecision;
+import cern.acctesting.service.schedule.constraint.ConstraintPrediction;
+import cern.acctesting.service.schedule.constraint.ConstraintPrediction.Prediction;
+import cern.acctesting.service.schedule.constraint.ItemPairConstraint;
+import cern.acctesting.service.schedule.constraint.SingleItemConstraint;
+import cern.acctesting.service.schedule.constraint.UpdateableConstraint;
+import cern.acctesting.service.schedule.constraint.VersionedConstraint;
+
+public class ConstraintUpdaterTest {
+
+    private ConstraintUpdater updater;
+    private CountDownLatch release;
+
+    @Before
+    public void setUp() {
+        updater = new ConstraintUpdater();
+        release = new CountDownLatch(1);
+    }
+
+    private class CountingConstraint implements UpdateableConstraint {
+        private final boolean blocking;
+        private volatile int updates;
+
+        public CountingConstraint(boolean blocking) {
+            this.blocking = blocking;
+        }
+
+        @Override
+        public void updateConstraint() {
+            // the first update is never blocked, it is run by the calling thread
+            if (blocking && updates > 0) {
+                try {
+                    release.await(10, TimeUnit.SECONDS);
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            updates++;
+        }
+    }
+
+    @Test
+    public void testUpdateWaitsForAllConstraints() {
+        updater.setUpdatingInParallel(true);
+        List<UpdateableConstraint> constraints = new ArrayList<UpdateableConstraint>();
+        for (int i = 0; i < 5; i++) {
+            constraints.add(new CountingConstraint(false));
+        }
+        updater.update(constraints);
+
+        for (UpdateableConstraint constraint : constraints) {
+            assertEquals(1, ((CountingConstraint) constraint).updates);
+        }
+    }
+
+    @Test
+    public void testUpdateRunsSequentiallyOnCallingThread() {
+        final Thread caller = Thread.currentThread();
+        final List<Integer> order = new ArrayList<Integer>();
+        List<UpdateableConstraint> constraints = new ArrayList<UpdateableConstraint>();
+        for (int i = 0; i < 5; i++) {
+            final int index = i;
+            constraints.add(new UpdateableConstraint() {
+                @Override
+                public void updateConstraint() {
+                    assertSame(caller, Thread.currentThread());
+                    order.add(index);
+                }
+            });
+        }
+        updater.update(constraints);
+
+        assertEquals(Arrays.asList(0, 1, 2, 3, 4), order);
+    }
+
+    @Test
+    public void testFailedUpdateWaitsForParallelUpdates() {
+        updater.setUpdatingInParallel(true);
+        final AtomicInteger finishedUpdates = new AtomicInteger();
+        List<UpdateableConstraint> constraints = new ArrayList<UpdateableConstraint>();
+        // the first update is run by the calling thread and fails right away
+        constraints.add(new UpdateableConstraint() {
+            @Override
+            public void updateConstraint() {
+                throw new IllegalStateException();
+            }
+        });
+        for (int i = 0; i < 3; i++) {
+            constraints.add(new UpdateableConstraint() {
+                @Override
+                public void updateConstraint() {
+                    try {
+                        Thread.sleep(100);
+                    }
+                    catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    finishedUpdates.incrementAndGet();
+                }
+            });
+        }
+
+        try {
+            updater.update(constraints);
+            fail("The failed update must be reported.");
+        }
+        catch (IllegalStateException e) {
+            // the other updates are not running anymore
+            assertEquals(3, finishedUpdates.get());
+        }
+    }
+
+    @Test
+    public void testUpdateInBackgroundDoesNotWait() {
+        CountingConstraint constraint = new CountingConstraint(true);
+        List<UpdateableConstraint> constraints = new ArrayList<UpdateableConstraint>();
+        constraints.add(constraint);
+
+        // the first update is waited for
+        updater.updateInBackground(constraints);
+        assertEquals(1, constraint.updates);
+
+        updater.updateInBackground(constraints);
+        // the update is still running, so no second update is started
+        updater.updateInBackground(constraints);
+        assertEquals(1, constraint.updates);
+
+        release.countDown();
+        updater.update(constraints);
+        assertEquals(2, constraint.updates);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testFailedBackgroundUpdateIsReported() throws InterruptedException {
+        final CountDownLatch failed = new CountDownLatch(1);
+        List<UpdateableConstraint> constraints = new ArrayList<UpdateableConstraint>();
+        constraints.add(new UpdateableConstraint() {
+            private int updates;
+
+            @Override
+            public void updateConstraint() {
+                // only the update in the background fails
+                if (updates++ > 0) {
+                    failed.countDown();
+                    throw new IllegalStateException();
+                }
+            }
+        });
+
+        updater.updateInBackground(constraints);
+        updater.updateInBackground(constraints);
+        assertTrue(failed.await(10, TimeUnit.SECONDS));
+        updater.update(constraints);
+    }
+
+    /**
+     * A soft constraint violated by every pair of items with the value of its current data. Every update increases the value, the updates
+     * after the first one wait until they get a permit.
+     */
+    private static class PinnedConstraint implements ItemPairConstraint, VersionedConstraint {
+        private final Semaphore permits = new Semaphore(0);
+        private final CountDownLatch updated = new CountDownLatch(2);
+        private volatile int latestData;
+        private int data;
+
+        @Override
+        public void updateConstraint() {
+            if (latestData > 0) {
+                try {
+                    permits.tryAcquire(10, TimeUnit.SECONDS);
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            latestData++;
+            updated.countDown();
+        }
+
+        @Override
+        public long getVersion() {
+            return data;
+        }
+
+        @Override
+        public void switchToLatestData() {
+            data = latestData;
+        }
+
+        @Override
+        public ConstraintDecision check(ScheduledItem item1, ScheduledItem item2) {
+            return new ConstraintDecision(false, false, data);
+        }
+
+        @Override
+        public boolean needsChecking(ItemToSchedule item1, ItemToSchedule item2) {
+            return true;
+        }
+
+        @Override
+        public ConstraintPrediction predictDecision(ItemToSchedule movedItem, ItemToSchedule fixItem) {
+            return new ConstraintPrediction(Prediction.CONFLICT, Prediction.CONFLICT, Prediction.CONFLICT, data);
+        }
+    }
+
+    @Test
+    public void testManagerPinsConstraintDataForRun() throws InterruptedException {
+        PinnedConstraint constraint = new PinnedConstraint();
+        List<ItemPairConstraint> pairConstraints = new ArrayList<ItemPairConstraint>();
+        pairConstraints.add(constraint);
+        ViolationsManager manager = new ViolationsManager(new ArrayList<SingleItemConstraint>(), pairConstraints);
+        manager.setUpdatingInBackground(true);
+
+        SchedulePlan plan = new SchedulePlan();
+        for (int i = 0; i < 3; i++) {
+            Map<Lane, Integer> durations = new HashMap<Lane, Integer>();
+            durations.put(new Lane(i), 10);
+            plan.add(new ItemToSchedule(i, durations, new ArrayList<ItemToSchedule>()), 0);
+        }
+
+        // the first update is finished before the run starts
+        manager.initialize(plan);
+        assertEquals(1, constraint.data);
+        assertEquals(3, manager.calculatePlanValues(plan).softViolationsValue);
+
+        // the second update completes during the run, but the run keeps the data it started with
+        manager.initialize(plan);
+        constraint.permits.release();
+        assertTrue(constraint.updated.await(10, TimeUnit.SECONDS));
+        assertEquals(1, constraint.data);
+        assertEquals(3, manager.calculatePlanValues(plan).softViolationsValue);
+        // every item is part of two pairs
+        assertEquals(2, manager.getBiggestViolator(null).getSoftViolationsValue());
+
+        manager.initialize(plan);
+        assertEquals(2, constraint.data);
+        assertEquals(6, manager.calculatePlanValues(plan).softViolationsValue);
+    }
+}
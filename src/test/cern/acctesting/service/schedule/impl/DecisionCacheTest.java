@@ -0,0 +1,78 @@
+// @formatter:off
+ /*******************************************************************************
+ *
+ * This file is part of JScheduleX.
+ * 
+ * Copyright (c) 2012 CERN.
+ *
+ * This software is distributed under the terms of the GNU Lesser General
+ * Public Licence version 3 (LGPL Version 3), copied verbatim in the file COPYING
+ * 
+ * In applying this licence, CERN does not waive the privileges and immunities
+ * granted to it by virtue of its status as an Intergovernmental Organization
+ * or submit itself to any jurisdiction.
+ * 
+ ******************************************************************************/
+// @formatter:on
+
+package cern.acctesting.service.schedule.impl;
+
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import cern.acctesting.service.schedule.ItemToSchedule;
+import cern.acctesting.service.schedule.Lane;
+import cern.acctesting.service.schedule.constraint.ConstraintDecision;
+
+public class DecisionCacheTest {
+
+    private DecisionCache cache;
+    private ItemToSchedule item1;
+    private ItemToSchedule item2;
+
+    @Before
+    public void setUp() {
+        cache = new DecisionCache(100);
+        item1 = createItem(1);
+        item2 = createItem(2);
+    }
+
+    private static ItemToSchedule createItem(int id) {
+        Map<Lane, Integer> durations = new HashMap<Lane, Integer>();
+        durations.put(new Lane(0), 10);
+        return new ItemToSchedule(id, durations, new ArrayList<ItemToSchedule>());
+    }
+
+    @Test
+    public void testGetStoredDecision() {
+        ConstraintDecision decision = new ConstraintDecision(true, false, 5);
+        cache.put(0, item1, item2, 5, decision);
+
+        assertSame(decision, cache.get(0, item1, item2, 5));
+    }
+
+    @Test
+    public void testGetUnknownDecision() {
+        cache.put(0, item1, item2, 5, new ConstraintDecision(true, false, 5));
+
+        assertNull(cache.get(1, item1, item2, 5));
+        assertNull(cache.get(0, item2, item1, 5));
+        assertNull(cache.get(0, item1, item2, -5));
+        assertNull(cache.get(0, createItem(1), item2, 5));
+    }
+
+    @Test
+    public void testClear() {
+        cache.put(0, item1, item2, 5, new ConstraintDecision(true, false, 5));
+        cache.clear();
+
+        assertNull(cache.get(0, item1, item2, 5));
+    }
+}
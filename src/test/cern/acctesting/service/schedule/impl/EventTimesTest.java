@@ -0,0 +1,116 @@
+// @formatter:off
+ /*******************************************************************************
+ *
+ * This file is part of JScheduleX.
+ * 
+ * Copyright (c) 2012 CERN.
+ *
+ * This software is distributed under the terms of the GNU Lesser General
+ * Public Licence version 3 (LGPL Version 3), copied verbatim in the file COPYING
+ * 
+ * In applying this licence, CERN does not waive the privileges and immunities
+ * granted to it by virtue of its status as an Intergovernmental Organization
+ * or submit itself to any jurisdiction.
+ * 
+ ******************************************************************************/
+// @formatter:on
+
+
+package cern.acctesting.service.schedule.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.Test;
+
+public class EventTimesTest {
+
+    private static List<Integer> toList(Iterator<Integer> iterator) {
+        List<Integer> result = new ArrayList<Integer>();
+        while (iterator.hasNext()) {
+            result.add(iterator.next());
+        }
+        return result;
+    }
+
+    @Test
+    public void testCountsTimes() {
+        EventTimes times = new EventTimes();
+        times.add(5);
+        times.add(5);
+        times.add(-2);
+
+        assertEquals(2, times.size());
+        assertEquals(2, times.count(5));
+        assertTrue(times.remove(5));
+        assertEquals(1, times.count(5));
+        assertTrue(times.remove(5));
+        assertFalse(times.remove(5));
+        assertEquals(1, times.size());
+        assertEquals(Arrays.asList(-2), toList(times.iterator(Integer.MIN_VALUE, Integer.MAX_VALUE)));
+    }
+
+    @Test
+    public void testMatchesTreeMap() {
+        Random random = new Random(42);
+        EventTimes times = new EventTimes();
+        TreeMap<Integer, Integer> expected = new TreeMap<Integer, Integer>();
+        for (int i = 0; i < 20000; i++) {
+            int time = random.nextInt(500);
+            if (random.nextBoolean()) {
+                Integer count = expected.get(time);
+                assertEquals(count != null, times.remove(time));
+                if (count != null && count > 1) {
+                    expected.put(time, count - 1);
+                }
+                else {
+                    expected.remove(time);
+                }
+            }
+            else {
+                times.add(time);
+                Integer count = expected.get(time);
+                expected.put(time, count == null ? 1 : count + 1);
+            }
+        }
+
+        assertEquals(expected.size(), times.size());
+        for (Entry<Integer, Integer> entry : expected.entrySet()) {
+            assertEquals(entry.getValue().intValue(), times.count(entry.getKey()));
+        }
+        assertEquals(new ArrayList<Integer>(expected.keySet()), toList(times.iterator(Integer.MIN_VALUE, Integer.MAX_VALUE)));
+        assertEquals(new ArrayList<Integer>(expected.subMap(100, 200).keySet()), toList(times.iterator(100, 200)));
+        assertEquals(expected.lastKey().intValue(), times.last());
+        for (int time = -1; time < 510; time += 7) {
+            assertEquals(expected.lowerKey(time), times.lower(time));
+        }
+    }
+
+    @Test
+    public void testCopiesAndIteratorsAreNotChanged() {
+        EventTimes times = new EventTimes();
+        for (int i = 0; i < 10; i++) {
+            times.add(i * 10);
+        }
+        Iterator<Integer> iterator = times.iterator(0, 50);
+        EventTimes copy = new EventTimes(times);
+
+        times.remove(20);
+        times.add(25);
+        times.shift(1);
+
+        assertEquals(Arrays.asList(0, 10, 20, 30, 40), toList(iterator));
+        assertEquals(1, copy.count(20));
+        assertEquals(0, copy.count(25));
+        assertEquals(Arrays.asList(1, 11, 26, 31), toList(times.iterator(0, 40)));
+    }
+}
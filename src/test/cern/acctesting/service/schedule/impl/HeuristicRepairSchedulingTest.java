@@ -18,10 +18,15 @@
 package cern.acctesting.service.schedule.impl;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collection;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -43,6 +48,9 @@ import cern.acctesting.service.schedule.constraint.impl.DependenciesConstraint;
 import cern.acctesting.service.schedule.constraint.impl.NoOverlappingConstraint;
 import cern.acctesting.service.schedule.constraint.impl.StartNowConstraint;
 import cern.acctesting.service.schedule.exception.SchedulingException;
+import cern.acctesting.service.schedule.exception.ViolatorUpdateInvalid;
+import cern.acctesting.service.schedule.impl.ViolationsManager.ConstraintPartner;
+import cern.acctesting.service.schedule.impl.ViolationsManager.EvaluationContext;
 
 public class HeuristicRepairSchedulingTest {
 
@@ -101,6 +109,32 @@ public class HeuristicRepairSchedulingTest {
         return true;
     }
 
+    private ViolatorValues sumViolations(SchedulePlan plan) {
+        ViolatorValues values = new ViolatorValues();
+        final List<ScheduledItem> scheduledItems = plan.getScheduledItems();
+        for (int i = 0; i < scheduledItems.size(); i++) {
+            List<ConstraintDecision> decisions = new ArrayList<ConstraintDecision>();
+            for (SingleItemConstraint constraint : singleConstraints) {
+                decisions.add(constraint.check(scheduledItems.get(i)));
+            }
+            for (int j = i + 1; j < scheduledItems.size(); j++) {
+                for (ItemPairConstraint constraint : pairConstraints) {
+                    decisions.add(constraint.check(scheduledItems.get(i), scheduledItems.get(j)));
+                }
+            }
+            for (ConstraintDecision decision : decisions) {
+                if (!decision.isFulfilled()) {
+                    if (decision.isHardConstraint()) {
+                        values.hardViolationsValue += decision.getViolationValue();
+                    } else {
+                        values.softViolationsValue += decision.getViolationValue();
+                    }
+                }
+            }
+        }
+        return values;
+    }
+
     @Test
     public void testScheduleNothing1() {
         SchedulePlan result = noConstraintScheduling.schedule(new ArrayList<ItemToSchedule>());
@@ -801,6 +835,49 @@ public class HeuristicRepairSchedulingTest {
         assertTrue(allConstraintsSatisfied(result));
     }
     
+    private static ItemToSchedule createItem(int id, int duration, List<ItemToSchedule> requiredItems, Lane... lanes) {
+        Map<Lane, Integer> durations = new HashMap<Lane, Integer>();
+        for (Lane lane : lanes) {
+            durations.put(lane, duration);
+        }
+        return new ItemToSchedule(id, durations, requiredItems);
+    }
+
+    @Test
+    public void testScheduleIntoGapsBetweenFixedItems() {
+        // the gaps are only filled if the pair constraints only care about the lanes and dependencies
+        singleConstraints = new ArrayList<SingleItemConstraint>();
+        pairConstraints = new ArrayList<ItemPairConstraint>();
+        pairConstraints.add(new NoOverlappingConstraint());
+        pairConstraints.add(new DependenciesConstraint());
+        ViolationsManager gapManager = new ViolationsManager(singleConstraints, pairConstraints);
+        assertTrue(gapManager.isOnlyCheckingLanesAndDependencies());
+
+        Lane lane0 = new Lane(0);
+        Lane lane1 = new Lane(1);
+        List<ItemToSchedule> none = new ArrayList<ItemToSchedule>();
+        ArrayList<ScheduledItem> fixedItems = new ArrayList<ScheduledItem>();
+        fixedItems.add(new ScheduledItem(createItem(11, 10, none, lane0), 0));
+        fixedItems.add(new ScheduledItem(createItem(12, 10, none, lane0), 30));
+        fixedItems.add(new ScheduledItem(createItem(13, 10, none, lane0), 100));
+
+        ItemToSchedule item1 = createItem(1, 15, none, lane0);
+        ItemToSchedule item2 = createItem(2, 10, Arrays.asList(item1), lane0);
+        ItemToSchedule item3 = createItem(3, 5, none, lane0);
+        ItemToSchedule item4 = createItem(4, 20, none, lane0, lane1);
+        SchedulePlan result = new HeuristicRepairScheduling(gapManager).schedule(Arrays.asList(item1, item2, item3, item4), fixedItems);
+
+        // the first gap fitting item 1 is between the first two fixed items
+        assertEquals(10, result.getScheduledItem(item1).getStart());
+        // item 2 has to wait for item 1, the rest of the first gap is too small
+        assertEquals(40, result.getScheduledItem(item2).getStart());
+        // item 3 fits into the rest of the first gap
+        assertEquals(25, result.getScheduledItem(item3).getStart());
+        assertEquals(50, result.getScheduledItem(item4).getStart());
+        assertEquals(110, result.getMakespan());
+        assertTrue(allConstraintsSatisfied(result));
+    }
+
     @Test
     public void testScheduleSimpleWithFixed() {
         // a lot of different items, most of them collide, there is some moving around required and fixed items as well
@@ -1302,4 +1379,473 @@ public class HeuristicRepairSchedulingTest {
         assertEquals(300, result.getMakespan());
         assertTrue(allConstraintsSatisfied(result));
     }
+
+    @Test
+    public void testCalculatePlanValues() {
+        ArrayList<ScheduledItem> fixedItems = new ArrayList<ScheduledItem>();
+        List<ItemToSchedule> items = initializeItemsToForTest(4, 3);
+
+        SchedulePlan result = scheduling.schedule(items, fixedItems);
+        ViolatorValues resultValues = manager.calculatePlanValues(result);
+        assertEquals(sumViolations(result).hardViolationsValue, resultValues.hardViolationsValue);
+        assertEquals(sumViolations(result).softViolationsValue, resultValues.softViolationsValue);
+
+        SchedulePlan changedPlan = result.clone();
+        changedPlan.moveScheduledItem(items.get(0), 0);
+        changedPlan.moveScheduledItem(items.get(5), 150);
+        changedPlan.moveScheduledItem(items.get(7), 1000);
+        ViolatorValues changedValues = manager.calculatePlanValues(changedPlan);
+        assertTrue(changedValues.hardViolationsValue > 0);
+        assertEquals(sumViolations(changedPlan).hardViolationsValue, changedValues.hardViolationsValue);
+        assertEquals(sumViolations(changedPlan).softViolationsValue, changedValues.softViolationsValue);
+    }
+
+    @Test
+    public void testPlanHasBeenUpdatedMatchesInitialize() {
+        List<ItemToSchedule> items = initializeItemsToForTest(4, 3);
+        SchedulePlan plan = createPlanAtZero(items);
+        plan.fixateItem(plan.getScheduledItem(items.get(0)));
+        manager.initialize(plan);
+
+        // item 4 requires the fixed item 0 and shares its lane
+        int fixedIndex = plan.getItemIndex().indexOf(items.get(0));
+        assertTrue(getPartnerIndexes(manager, fixedIndex).contains(plan.getItemIndex().indexOf(items.get(4))));
+        SchedulePlan newPlan = plan.clone();
+        newPlan.moveScheduledItem(items.get(4), 100);
+        newPlan.moveScheduledItem(items.get(5), 150);
+        newPlan.moveScheduledItem(items.get(9), 300);
+        manager.planHasBeenUpdated(plan, newPlan);
+
+        ViolationsManager initializedManager = new ViolationsManager(singleConstraints, pairConstraints);
+        SchedulePlan initializedPlan = newPlan.clone();
+        initializedManager.initialize(initializedPlan);
+
+        assertTrue(getViolators(manager).size() > 1);
+        assertEquals(getViolators(initializedManager), getViolators(manager));
+        ViolatorValues values = manager.calculatePlanValues(newPlan);
+        ViolatorValues initializedValues = initializedManager.calculatePlanValues(initializedPlan);
+        assertEquals(initializedValues.hardViolationsValue, values.hardViolationsValue);
+        assertEquals(initializedValues.softViolationsValue, values.softViolationsValue);
+        assertEquals(sumViolations(newPlan).hardViolationsValue, values.hardViolationsValue);
+        assertEquals(sumViolations(newPlan).softViolationsValue, values.softViolationsValue);
+    }
+
+    /**
+     * @return the contents of the violations tree of the manager from the biggest to the smallest violator
+     */
+    private static List<String> getViolators(ViolationsManager manager) {
+        List<String> violators = new ArrayList<String>();
+        for (Violator violator = manager.getBiggestViolator(null); violator != null; violator = manager.getBiggestViolator(violator)) {
+            violators.add(violator.getScheduledItem() + ": " + violator.getHardViolationsValue() + "/" + violator.getSoftViolationsValue());
+        }
+        return violators;
+    }
+
+    /**
+     * A soft constraint that is never violated.
+     */
+    private static class NeverViolatedConstraint implements SingleItemConstraint {
+        @Override
+        public ConstraintDecision check(ScheduledItem item) {
+            return new ConstraintDecision(false, true, 0);
+        }
+    }
+
+    @Test
+    public void testReorderingSingleConstraints() {
+        StartNowConstraint startNow = new StartNowConstraint();
+        NeverViolatedConstraint neverViolated = new NeverViolatedConstraint();
+        List<SingleItemConstraint> constraints = new ArrayList<SingleItemConstraint>();
+        constraints.add(neverViolated);
+        constraints.add(startNow);
+        ViolationsManager reorderingManager = new ViolationsManager(constraints, pairConstraints);
+        reorderingManager.initialize(createPlanAtZero(initializeItemsToForTest(4, 3)));
+
+        // the start now constraint is violated by every candidate after 0
+        Violator violator = reorderingManager.getBiggestViolator(null);
+        EvaluationContext context = reorderingManager.createEvaluationContext(violator);
+        for (int start = 1; start <= 1024; start++) {
+            try {
+                context.evaluate(start);
+            }
+            catch (ViolatorUpdateInvalid e) {
+                // the statistics are collected anyway
+            }
+        }
+        assertEquals(constraints, reorderingManager.getSingleConstraintOrder());
+        reorderingManager.createEvaluationContext(violator);
+        assertEquals(Arrays.asList(startNow, neverViolated), reorderingManager.getSingleConstraintOrder());
+    }
+
+    @Test
+    public void testReorderingDoesNotChangeResult() {
+        List<SingleItemConstraint> constraints = new ArrayList<SingleItemConstraint>();
+        constraints.add(new NeverViolatedConstraint());
+        constraints.add(new StartNowConstraint());
+        ViolationsManager reorderingManager = new ViolationsManager(constraints, pairConstraints);
+        ViolationsManager fixedOrderManager = new ViolationsManager(constraints, pairConstraints);
+        fixedOrderManager.setReorderingConstraints(false);
+
+        List<ItemToSchedule> items = initializeItemsToForTest(6, 6);
+        SchedulePlan reorderedResult = new HeuristicRepairScheduling(reorderingManager).schedule(items);
+        SchedulePlan fixedOrderResult = new HeuristicRepairScheduling(fixedOrderManager).schedule(items);
+
+        assertEquals(Arrays.asList(constraints.get(1), constraints.get(0)), reorderingManager.getSingleConstraintOrder());
+        assertEquals(constraints, fixedOrderManager.getSingleConstraintOrder());
+        assertEquals(fixedOrderResult.getScheduledItems().toString(), reorderedResult.getScheduledItems().toString());
+    }
+
+    @Test
+    public void testCheckViolationsForPlanCountsPairsOnce() {
+        ArrayList<ScheduledItem> fixedItems = new ArrayList<ScheduledItem>();
+        List<ItemToSchedule> items = initializeItemsToForTest(4, 3);
+
+        SchedulePlan changedPlan = scheduling.schedule(items, fixedItems).clone();
+        changedPlan.moveScheduledItem(items.get(1), 0);
+        changedPlan.moveScheduledItem(items.get(6), 50);
+        ViolatorValues values = manager.checkViolationsForPlan(changedPlan);
+        assertTrue(values.hardViolationsValue > 0);
+        assertEquals(sumViolations(changedPlan).hardViolationsValue, values.hardViolationsValue);
+        assertEquals(sumViolations(changedPlan).softViolationsValue, values.softViolationsValue);
+    }
+
+    @Test
+    public void testOnlyViolatedItemsAreViolators() {
+        ArrayList<ScheduledItem> fixedItems = new ArrayList<ScheduledItem>();
+        List<ItemToSchedule> items = initializeItemsToForTest(4, 3);
+
+        SchedulePlan result = scheduling.schedule(items, fixedItems);
+        int violatedItems = 0;
+        for (ScheduledItem item : result.getScheduledItems()) {
+            if (manager.checkViolationsForItem(item, result).softViolationsValue > 0) {
+                violatedItems++;
+            }
+        }
+        assertTrue(violatedItems < items.size());
+
+        int violators = 0;
+        for (Violator violator = manager.getBiggestViolator(null); violator != null; violator = manager.getBiggestViolator(violator)) {
+            assertTrue(violator.getHardViolationsValue() > 0 || violator.getSoftViolationsValue() > 0);
+            violators++;
+        }
+        assertEquals(violatedItems, violators);
+    }
+
+    @Test
+    public void testInitializeWithChangedItems() {
+        ArrayList<ScheduledItem> fixedItems = new ArrayList<ScheduledItem>();
+        List<ItemToSchedule> items = initializeItemsToForTest(4, 3);
+        SchedulePlan result = scheduling.schedule(items, fixedItems);
+
+        // the graph of the previous run is reused for the unchanged items
+        Map<Lane, Integer> durations = new HashMap<Lane, Integer>();
+        durations.put(new Lane(1), 150);
+        ItemToSchedule changedItem = new ItemToSchedule(items.get(7).getId(), durations, items.get(3).getRequiredItems());
+        SchedulePlan changedPlan = new SchedulePlan();
+        for (ScheduledItem item : result.getScheduledItems()) {
+            ItemToSchedule itemToSchedule = item.getItemToSchedule();
+            if (itemToSchedule.equals(items.get(7))) {
+                changedPlan.add(changedItem, item.getStart());
+            }
+            else if (!itemToSchedule.equals(items.get(0))) {
+                changedPlan.add(itemToSchedule, item.getStart());
+            }
+        }
+        changedPlan.add(new ItemToSchedule(100, durations, new ArrayList<ItemToSchedule>()), 50);
+        changedPlan.moveScheduledItem(items.get(5), 0);
+        changedPlan.fixateItem(changedPlan.getScheduledItem(items.get(2)));
+
+        manager.initialize(changedPlan);
+        ViolatorValues values = manager.calculatePlanValues(changedPlan);
+        assertTrue(values.hardViolationsValue > 0);
+        assertEquals(sumViolations(changedPlan).hardViolationsValue, values.hardViolationsValue);
+        assertEquals(sumViolations(changedPlan).softViolationsValue, values.softViolationsValue);
+    }
+
+    /**
+     * An item with a group that is read by the {@link GroupConstraint}.
+     */
+    private static class GroupItem extends ItemToSchedule {
+        private final int group;
+
+        public GroupItem(int id, int group) {
+            super(id, Collections.singletonMap(new Lane(id), 10), new ArrayList<ItemToSchedule>());
+            this.group = group;
+        }
+    }
+
+    /**
+     * A soft constraint that checks the items of the same group.
+     */
+    private static class GroupConstraint implements ItemPairConstraint {
+
+        @Override
+        public ConstraintDecision check(ScheduledItem item1, ScheduledItem item2) {
+            return new ConstraintDecision(false, false, 1);
+        }
+
+        @Override
+        public boolean needsChecking(ItemToSchedule item1, ItemToSchedule item2) {
+            return ((GroupItem) item1).group == ((GroupItem) item2).group;
+        }
+
+        @Override
+        public ConstraintPrediction predictDecision(ItemToSchedule movedItem, ItemToSchedule fixItem) {
+            return new ConstraintPrediction(Prediction.CONFLICT, Prediction.CONFLICT, Prediction.CONFLICT, 1);
+        }
+    }
+
+    @Test
+    public void testInitializeWithRedefinedSubclassItems() {
+        List<ItemPairConstraint> groupConstraints = new ArrayList<ItemPairConstraint>();
+        groupConstraints.add(new GroupConstraint());
+        ViolationsManager groupManager = new ViolationsManager(new ArrayList<SingleItemConstraint>(), groupConstraints);
+        groupManager.initialize(createPlanAtZero(Arrays.<ItemToSchedule> asList(new GroupItem(0, 1), new GroupItem(1, 1),
+                new GroupItem(2, 2))));
+        assertEquals(1, groupManager.getGraphStatistics().getPairCount());
+
+        // the redefined item gains two pairs, even though the id, durations and required items are the same
+        groupManager.initialize(createPlanAtZero(Arrays.<ItemToSchedule> asList(new GroupItem(0, 1), new GroupItem(1, 1),
+                new GroupItem(2, 1))));
+        assertEquals(3, groupManager.getGraphStatistics().getPairCount());
+
+        // the redefined item loses its pairs
+        SchedulePlan plan = createPlanAtZero(Arrays.<ItemToSchedule> asList(new GroupItem(0, 3), new GroupItem(1, 1), new GroupItem(2, 1)));
+        groupManager.initialize(plan);
+        assertEquals(1, groupManager.getGraphStatistics().getPairCount());
+        assertTrue(getPartnerIndexes(groupManager, plan.getItemIndex().indexOf(new GroupItem(0, 3))).isEmpty());
+        assertEquals(1, groupManager.calculatePlanValues(plan).softViolationsValue);
+    }
+
+    private static SchedulePlan createPlanAtZero(List<ItemToSchedule> items) {
+        SchedulePlan plan = new SchedulePlan();
+        for (ItemToSchedule item : items) {
+            plan.add(item, 0);
+        }
+        return plan;
+    }
+
+    private static List<Integer> getPartnerIndexes(ViolationsManager manager, int item) {
+        List<Integer> partnerIndexes = new ArrayList<Integer>();
+        for (ConstraintPartner partner : manager.constraintPartners[item]) {
+            partnerIndexes.add(partner.getPartnerIndex());
+        }
+        Collections.sort(partnerIndexes);
+        return partnerIndexes;
+    }
+
+    @Test
+    public void testLaneSignatureDiscoveryFindsAllPairs() {
+        List<ItemToSchedule> items = initializeItemsToForTest(4, 3);
+        Map<Lane, Integer> durations = new HashMap<Lane, Integer>();
+        durations.put(new Lane(1), 50);
+        durations.put(new Lane(4), 50);
+        items.add(new ItemToSchedule(100, durations, items.subList(0, 2)));
+
+        List<ItemPairConstraint> indexedConstraints = new ArrayList<ItemPairConstraint>();
+        indexedConstraints.add(new NoOverlappingConstraint());
+        indexedConstraints.add(new DependenciesConstraint());
+        ViolationsManager indexedManager = new ViolationsManager(singleConstraints, indexedConstraints);
+        indexedManager.initialize(createPlanAtZero(items));
+
+        // a constraint that is neither lane based nor a dependency forces the check of all pairs
+        List<ItemPairConstraint> allConstraints = new ArrayList<ItemPairConstraint>(indexedConstraints);
+        allConstraints.add(new ItemPairConstraint() {
+            @Override
+            public ConstraintPrediction predictDecision(ItemToSchedule movedItem, ItemToSchedule fixItem) {
+                return new ConstraintPrediction(Prediction.NO_CONFLICT, Prediction.NO_CONFLICT, Prediction.NO_CONFLICT, 0);
+            }
+
+            @Override
+            public boolean needsChecking(ItemToSchedule item1, ItemToSchedule item2) {
+                return false;
+            }
+
+            @Override
+            public ConstraintDecision check(ScheduledItem item1, ScheduledItem item2) {
+                return new ConstraintDecision(true, true, 0);
+            }
+        });
+        ViolationsManager fullManager = new ViolationsManager(singleConstraints, allConstraints);
+        fullManager.initialize(createPlanAtZero(items));
+
+        for (int i = 0; i < items.size(); i++) {
+            assertEquals(getPartnerIndexes(fullManager, i), getPartnerIndexes(indexedManager, i));
+        }
+        assertEquals(fullManager.getBiggestViolator(null).getHardViolationsValue(), indexedManager.getBiggestViolator(null)
+                .getHardViolationsValue());
+    }
+
+    /**
+     * A soft constraint between the items at the same position of neighbouring lanes. Its value depends on the order of the checked items,
+     * so the pair has the value of the check made by the item with the bigger index.
+     */
+    private static class NeighbourLaneConstraint implements ItemPairConstraint {
+
+        @Override
+        public ConstraintDecision check(ScheduledItem item1, ScheduledItem item2) {
+            return new ConstraintDecision(false, false, item1.getItemToSchedule().getId() < item2.getItemToSchedule().getId() ? 1 : 2);
+        }
+
+        @Override
+        public boolean needsChecking(ItemToSchedule item1, ItemToSchedule item2) {
+            return Math.abs(item1.getId() - item2.getId()) == 10;
+        }
+
+        @Override
+        public ConstraintPrediction predictDecision(ItemToSchedule movedItem, ItemToSchedule fixItem) {
+            return new ConstraintPrediction(Prediction.CONFLICT, Prediction.CONFLICT, Prediction.CONFLICT, 1);
+        }
+    }
+
+    private static Map<ItemToSchedule, Violator> getViolatorsByItem(ViolationsManager violationsManager) {
+        Map<ItemToSchedule, Violator> violators = new HashMap<ItemToSchedule, Violator>();
+        for (Violator violator = violationsManager.getBiggestViolator(null); violator != null; violator = violationsManager
+                .getBiggestViolator(violator)) {
+            violators.put(violator.getScheduledItem().getItemToSchedule(), violator);
+        }
+        return violators;
+    }
+
+    @Test
+    public void testParallelInitialization() {
+        List<ItemToSchedule> items = initializeItemsToForTest(110, 10);
+        List<ItemPairConstraint> threadSafeConstraints = new ArrayList<ItemPairConstraint>();
+        threadSafeConstraints.add(new NoOverlappingConstraint());
+        threadSafeConstraints.add(new DependenciesConstraint());
+        threadSafeConstraints.add(new NeighbourLaneConstraint());
+
+        ViolationsManager sequentialManager = new ViolationsManager(singleConstraints, threadSafeConstraints);
+        SchedulePlan sequentialPlan = createPlanAtZero(items);
+        sequentialManager.initialize(sequentialPlan);
+        ViolationsManager parallelManager = new ViolationsManager(singleConstraints, threadSafeConstraints);
+        parallelManager.setInitializingInParallel(true);
+        SchedulePlan parallelPlan = createPlanAtZero(items);
+        parallelManager.initialize(parallelPlan);
+
+        // every item is violated, so every item has to have the same values in both managers
+        Map<ItemToSchedule, Violator> sequentialViolators = getViolatorsByItem(sequentialManager);
+        Map<ItemToSchedule, Violator> parallelViolators = getViolatorsByItem(parallelManager);
+        assertEquals(items.size(), sequentialViolators.size());
+        assertEquals(items.size(), parallelViolators.size());
+        for (ItemToSchedule item : items) {
+            Violator sequentialViolator = sequentialViolators.get(item);
+            Violator parallelViolator = parallelViolators.get(item);
+            assertEquals(sequentialViolator.getScheduledItem(), parallelViolator.getScheduledItem());
+            assertEquals(sequentialViolator.getHardViolationsValue(), parallelViolator.getHardViolationsValue());
+            assertEquals(sequentialViolator.getSoftViolationsValue(), parallelViolator.getSoftViolationsValue());
+        }
+        ViolatorValues sequentialValues = sequentialManager.calculatePlanValues(sequentialPlan);
+        ViolatorValues parallelValues = parallelManager.calculatePlanValues(parallelPlan);
+        assertEquals(sequentialValues.hardViolationsValue, parallelValues.hardViolationsValue);
+        assertEquals(sequentialValues.softViolationsValue, parallelValues.softViolationsValue);
+
+        // the pairs of neighbouring lanes have the value of the check made by the item with the bigger index
+        ItemIndex index = parallelPlan.getItemIndex();
+        Map<Integer, ItemToSchedule> itemsById = new HashMap<Integer, ItemToSchedule>();
+        for (ItemToSchedule item : items) {
+            itemsById.put(item.getId(), item);
+        }
+        for (ItemToSchedule item : items) {
+            int expectedSoftValue = 0;
+            for (int neighbourId : new int[] { item.getId() - 10, item.getId() + 10 }) {
+                ItemToSchedule neighbour = itemsById.get(neighbourId);
+                if (neighbour != null) {
+                    boolean checkedByItem = index.indexOf(item) > index.indexOf(neighbour);
+                    expectedSoftValue += (item.getId() < neighbourId) == checkedByItem ? 1 : 2;
+                }
+            }
+            assertEquals(expectedSoftValue, parallelViolators.get(item).getSoftViolationsValue());
+        }
+    }
+
+    @Test
+    public void testCollectHardViolatedItems() {
+        List<ItemToSchedule> items = initializeItemsToForTest(2, 3);
+        SchedulePlan plan = createPlanAtZero(items);
+        manager.initialize(plan);
+        ItemIndex index = plan.getItemIndex();
+        int item = index.indexOf(items.get(0));
+
+        // the item overlaps with the items of its lane and is required by them, but every partner is reported once
+        BitSet itemsToCheck = new BitSet();
+        itemsToCheck.set(item);
+        BitSet violatedItems = new BitSet();
+        manager.collectHardViolatedItems(itemsToCheck, plan, violatedItems);
+        assertEquals(3, violatedItems.cardinality());
+        assertTrue(violatedItems.get(index.indexOf(items.get(1))));
+        assertTrue(violatedItems.get(index.indexOf(items.get(2))));
+        assertTrue(violatedItems.get(index.indexOf(items.get(4))));
+        assertEquals(3, manager.getHardViolatedItems(plan.getScheduledItem(item), plan).size());
+
+        itemsToCheck.set(index.indexOf(items.get(2)));
+        manager.collectHardViolatedItems(itemsToCheck, plan, violatedItems);
+        assertTrue(violatedItems.get(item));
+    }
+
+    @Test
+    public void testGraphStatistics() {
+        List<ItemToSchedule> items = initializeItemsToForTest(3, 4);
+        SchedulePlan plan = createPlanAtZero(items);
+        manager.initialize(plan);
+
+        int partnerCount = 0;
+        int maxDegree = 0;
+        for (int i = 0; i < items.size(); i++) {
+            int degree = getPartnerIndexes(manager, i).size();
+            partnerCount += degree;
+            maxDegree = Math.max(maxDegree, degree);
+        }
+        ConstraintGraphStatistics statistics = manager.getGraphStatistics();
+        assertEquals(items.size(), statistics.getItemCount());
+        assertEquals(0, statistics.getFixedItemCount());
+        assertEquals(partnerCount / 2, statistics.getPairCount());
+        assertEquals(0, statistics.getPairsWithFixedItem());
+        assertEquals(maxDegree, statistics.getMaxDegree());
+        assertEquals((double) partnerCount / items.size(), statistics.getAverageDegree(), 0.0001);
+
+        int histogramSum = 0;
+        for (int count : statistics.getDegreeHistogram()) {
+            histogramSum += count;
+        }
+        assertEquals(items.size(), histogramSum);
+        assertEquals(pairConstraints.size(), statistics.getPairsPerConstraint().size());
+        for (int pairs : statistics.getPairsPerConstraint().values()) {
+            assertTrue(pairs <= statistics.getPairCount());
+        }
+        assertTrue(statistics.getPredictionBlockCount() >= 2 * partnerCount);
+
+        manager.setUsingPrediction(false);
+        assertEquals(0, manager.getGraphStatistics().getPredictionBlockCount());
+    }
+
+    @Test
+    public void testEvaluationContextDoesNotChangePlan() throws ViolatorUpdateInvalid {
+        ArrayList<ScheduledItem> fixedItems = new ArrayList<ScheduledItem>();
+        List<ItemToSchedule> items = initializeItemsToForTest(4, 3);
+
+        SchedulePlan result = scheduling.schedule(items, fixedItems);
+        Violator violator = manager.getBiggestViolator(null);
+        ScheduledItem item = violator.getScheduledItem();
+        ScheduledItem planItem = result.getScheduledItem(item.getItemToSchedule());
+        EvaluationContext context = manager.createEvaluationContext(violator);
+
+        try {
+            context.evaluate(item.getStart() + 1000);
+            fail("The later start must increase the soft violations");
+        } catch (ViolatorUpdateInvalid e) {
+            // expected
+        }
+        ViolatorUpdate update = context.evaluate(item.getStart());
+        assertEquals(violator.getSoftViolationsValue(), update.getUpdatedViolator().getSoftViolationsValue());
+        assertSame(planItem, result.getScheduledItem(item.getItemToSchedule()));
+
+        manager.updateViolator(update);
+        try {
+            context.evaluate(item.getStart());
+            fail("The context must not be used after the manager has been updated");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+    }
 }
@@ -0,0 +1,84 @@
+// @formatter:off
+ /*******************************************************************************
+ *
+ * This file is part of JScheduleX.
+ * 
+ * Copyright (c) 2012 CERN.
+ *
+ * This software is distributed under the terms of the GNU Lesser General
+ * Public Licence version 3 (LGPL Version 3), copied verbatim in the file COPYING
+ * 
+ * In applying this licence, CERN does not waive the privileges and immunities
+ * granted to it by virtue of its status as an Intergovernmental Organization
+ * or submit itself to any jurisdiction.
+ * 
+ ******************************************************************************/
+// @formatter:on
+
+
+package cern.acctesting.service.schedule.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class IntIntMapTest {
+
+    @Test
+    public void testPutGetRemove() {
+        IntIntMap map = new IntIntMap();
+        map.put(5, 1);
+        map.put(-3, 2);
+        map.put(5, 3);
+
+        assertEquals(2, map.size());
+        assertEquals(3, map.get(5, 0));
+        assertEquals(2, map.get(-3, 0));
+        assertEquals(-1, map.get(7, -1));
+        assertTrue(map.remove(5));
+        assertFalse(map.remove(5));
+        assertFalse(map.containsKey(5));
+        assertEquals(1, map.size());
+    }
+
+    @Test
+    public void testMatchesHashMap() {
+        // keys from a small range produce long probe sequences and many removals within them
+        Random random = new Random(42);
+        IntIntMap map = new IntIntMap();
+        Map<Integer, Integer> expected = new HashMap<Integer, Integer>();
+        for (int i = 0; i < 20000; i++) {
+            int key = random.nextInt(300) - 100;
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.remove(key) != null, map.remove(key));
+            }
+            else {
+                map.put(key, i);
+                expected.put(key, i);
+            }
+        }
+
+        assertEquals(expected.size(), map.size());
+        for (int key = -100; key < 200; key++) {
+            Integer value = expected.get(key);
+            assertEquals(value == null ? -1 : value, map.get(key, -1));
+        }
+        int count = 0;
+        for (int slot = map.nextSlot(0); slot >= 0; slot = map.nextSlot(slot + 1)) {
+            assertEquals(expected.get(map.keyAt(slot)).intValue(), map.valueAt(slot));
+            count++;
+        }
+        assertEquals(expected.size(), count);
+
+        IntIntMap copy = new IntIntMap(map);
+        map.clear();
+        assertEquals(expected.size(), copy.size());
+        assertTrue(map.isEmpty());
+    }
+}
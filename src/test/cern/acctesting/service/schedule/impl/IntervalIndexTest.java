@@ -0,0 +1,145 @@
+// @formatter:off
+ /*******************************************************************************
+ *
+ * This file is part of JScheduleX.
+ * 
+ * Copyright (c) 2012 CERN.
+ *
+ * This software is distributed under the terms of the GNU Lesser General
+ * Public Licence version 3 (LGPL Version 3), copied verbatim in the file COPYING
+ * 
+ * In applying this licence, CERN does not waive the privileges and immunities
+ * granted to it by virtue of its status as an Intergovernmental Organization
+ * or submit itself to any jurisdiction.
+ * 
+ ******************************************************************************/
+// @formatter:on
+
+
+package cern.acctesting.service.schedule.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+import cern.acctesting.service.schedule.ItemToSchedule;
+import cern.acctesting.service.schedule.Lane;
+import cern.acctesting.service.schedule.ScheduledItem;
+
+public class IntervalIndexTest {
+
+    private static ScheduledItem createItem(int id, int start, int duration) {
+        Map<Lane, Integer> durations = new HashMap<Lane, Integer>();
+        durations.put(new Lane(0), duration);
+        return new ScheduledItem(new ItemToSchedule(id, durations, new ArrayList<ItemToSchedule>()), start);
+    }
+
+    private static int getEnd(ScheduledItem item) {
+        return item.getEnd(new Lane(0));
+    }
+
+    @Test
+    public void testQueries() {
+        ScheduledItem item1 = createItem(1, 0, 10);
+        ScheduledItem item2 = createItem(2, 10, 5);
+        ScheduledItem item3 = createItem(3, 12, 1);
+        IntervalIndex index = IntervalIndex.EMPTY.add(item1, 10).add(item2, 15).add(item3, 13);
+
+        assertEquals(3, index.size());
+        assertEquals(0, IntervalIndex.EMPTY.size());
+        assertEquals(Collections.singletonList(item1), index.getOverlapping(5, 10));
+        assertEquals(Arrays.asList(item2, item3), index.getOverlapping(12, 13));
+        assertEquals(0, index.getOverlapping(15, 20).size());
+        assertSame(item2, index.getNext(1));
+        assertSame(item3, index.getPrevious(13));
+        assertNull(index.getNext(13));
+        assertNull(index.getPrevious(0));
+
+        IntervalIndex removed = index.remove(item2);
+        assertEquals(2, removed.size());
+        assertEquals(Collections.singletonList(item3), removed.getOverlapping(10, 20));
+        assertEquals(2, index.getOverlapping(10, 20).size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRemoveUnknownItem() {
+        IntervalIndex.EMPTY.add(createItem(1, 0, 10), 10).remove(createItem(1, 5, 10));
+    }
+
+    @Test
+    public void testMatchesLinearSearch() {
+        Random random = new Random(42);
+        IntervalIndex index = IntervalIndex.EMPTY;
+        List<ScheduledItem> items = new ArrayList<ScheduledItem>();
+        for (int i = 0; i < 2000; i++) {
+            if (!items.isEmpty() && random.nextInt(3) == 0) {
+                index = index.remove(items.remove(random.nextInt(items.size())));
+            }
+            else {
+                ScheduledItem item = createItem(i, random.nextInt(1000), 1 + random.nextInt(50));
+                items.add(item);
+                index = index.add(item, getEnd(item));
+            }
+        }
+        Collections.sort(items);
+
+        assertEquals(items.size(), index.size());
+        for (int from = 0; from < 1050; from += 13) {
+            List<ScheduledItem> expected = new ArrayList<ScheduledItem>();
+            ScheduledItem next = null;
+            ScheduledItem previous = null;
+            for (ScheduledItem item : items) {
+                if (item.getStart() < from + 20 && getEnd(item) > from) {
+                    expected.add(item);
+                }
+                if (next == null && item.getStart() >= from) {
+                    next = item;
+                }
+                if (item.getStart() < from) {
+                    previous = item;
+                }
+            }
+            assertEquals(expected, index.getOverlapping(from, from + 20));
+            assertSame(next, index.getNext(from));
+            assertSame(previous, index.getPrevious(from));
+            for (int duration = 1; duration <= 16; duration *= 2) {
+                assertEquals(getFreeStart(items, from, duration), index.getFreeStart(from, duration));
+            }
+        }
+    }
+
+    private static int getFreeStart(List<ScheduledItem> items, int time, int duration) {
+        int start = time;
+        boolean moved = true;
+        while (moved) {
+            moved = false;
+            for (ScheduledItem item : items) {
+                if (item.getStart() < start + duration && getEnd(item) > start) {
+                    start = getEnd(item);
+                    moved = true;
+                }
+            }
+        }
+        return start;
+    }
+
+    @Test
+    public void testFreeStart() {
+        IntervalIndex index = IntervalIndex.EMPTY.add(createItem(1, 0, 10), 10).add(createItem(2, 15, 5), 20);
+        assertEquals(10, index.getFreeStart(0, 5));
+        assertEquals(20, index.getFreeStart(0, 6));
+        assertEquals(12, index.getFreeStart(12, 3));
+        assertEquals(30, index.getFreeStart(30, 100));
+        assertEquals(7, IntervalIndex.EMPTY.getFreeStart(7, 1));
+    }
+}
@@ -0,0 +1,82 @@
+// @formatter:off
+ /*******************************************************************************
+ *
+ * This file is part of JScheduleX.
+ * 
+ * Copyright (c) 2012 CERN.
+ *
+ * This software is distributed under the terms of the GNU Lesser General
+ * Public Licence version 3 (LGPL Version 3), copied verbatim in the file COPYING
+ * 
+ * In applying this licence, CERN does not waive the privileges and immunities
+ * granted to it by virtue of its status as an Intergovernmental Organization
+ * or submit itself to any jurisdiction.
+ * 
+ ******************************************************************************/
+// @formatter:on
+
+
+package cern.acctesting.service.schedule.impl;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import cern.acctesting.service.schedule.ItemToSchedule;
+import cern.acctesting.service.schedule.Lane;
+import cern.acctesting.service.schedule.ScheduledItem;
+import cern.acctesting.service.schedule.constraint.ItemPairConstraint;
+import cern.acctesting.service.schedule.constraint.impl.DependenciesConstraint;
+import cern.acctesting.service.schedule.constraint.impl.NoOverlappingConstraint;
+
+public class PairKernelTest {
+
+    private ItemToSchedule item1;
+    private ItemToSchedule item2;
+    private PairKernel kernel;
+
+    @Before
+    public void setUp() {
+        Map<Lane, Integer> durations1 = new HashMap<Lane, Integer>();
+        durations1.put(new Lane(0), 10);
+        durations1.put(new Lane(1), 4);
+        durations1.put(new Lane(2), 7);
+        item1 = new ItemToSchedule(1, durations1, new ArrayList<ItemToSchedule>());
+
+        Map<Lane, Integer> durations2 = new HashMap<Lane, Integer>();
+        durations2.put(new Lane(2), 3);
+        durations2.put(new Lane(1), 8);
+        durations2.put(new Lane(3), 20);
+        List<ItemToSchedule> required = new ArrayList<ItemToSchedule>();
+        required.add(item1);
+        item2 = new ItemToSchedule(2, durations2, required);
+
+        ItemIndex index = new ItemIndex(Arrays.asList(item1, item2));
+        kernel = new PairKernel(index, index.indexOf(item1), index.indexOf(item2));
+    }
+
+    private static int getViolationValue(ItemPairConstraint constraint, ScheduledItem item1, ScheduledItem item2) {
+        return constraint.check(item1, item2).getViolationValue();
+    }
+
+    @Test
+    public void testKernelsMatchConstraints() {
+        NoOverlappingConstraint noOverlapping = new NoOverlappingConstraint();
+        DependenciesConstraint dependencies = new DependenciesConstraint();
+        for (int start1 = 0; start1 < 15; start1++) {
+            for (int start2 = 0; start2 < 15; start2++) {
+                ScheduledItem scheduled1 = new ScheduledItem(item1, start1);
+                ScheduledItem scheduled2 = new ScheduledItem(item2, start2);
+                assertEquals(getViolationValue(noOverlapping, scheduled1, scheduled2), kernel.checkNoOverlapping(start1, start2));
+                assertEquals(getViolationValue(dependencies, scheduled1, scheduled2), kernel.checkDependencies(start1, start2));
+            }
+        }
+    }
+}
@@ -0,0 +1,345 @@
+// @formatter:off
+ /*******************************************************************************
+ *
+ * This file is part of JScheduleX.
+ * 
+ * Copyright (c) 2012 CERN.
+ *
+ * This software is distributed under the terms of the GNU Lesser General
+ * Public Licence version 3 (LGPL Version 3), copied verbatim in the file COPYING
+ * 
+ * In applying this licence, CERN does not waive the privileges and immunities
+ * granted to it by virtue of its status as an Intergovernmental Organization
+ * or submit itself to any jurisdiction.
+ * 
+ ******************************************************************************/
+// @formatter:on
+
+package cern.acctesting.service.schedule.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import cern.acctesting.service.schedule.ItemToSchedule;
+import cern.acctesting.service.schedule.Lane;
+import cern.acctesting.service.schedule.ScheduledItem;
+import cern.acctesting.service.schedule.constraint.ItemPairConstraint;
+import cern.acctesting.service.schedule.constraint.SingleItemConstraint;
+
+public class SchedulePlanTest {
+
+    private SchedulePlan plan;
+    private ItemToSchedule item1;
+    private ItemToSchedule item2;
+
+    @Before
+    public void setUp() {
+        plan = new SchedulePlan();
+        item1 = createItem(1, 10);
+        item2 = createItem(2, 5);
+        plan.add(item1, 0);
+        plan.add(item2, 10);
+    }
+
+    private static ItemToSchedule createItem(int id, int duration) {
+        Map<Lane, Integer> durations = new HashMap<Lane, Integer>();
+        durations.put(new Lane(0), duration);
+        return new ItemToSchedule(id, durations, new ArrayList<ItemToSchedule>());
+    }
+
+    @Test
+    public void testIndexFollowsChanges() {
+        ItemIndex index = plan.indexItems();
+        assertEquals(2, index.size());
+        int index1 = index.indexOf(item1);
+        int index2 = index.indexOf(item2);
+        assertSame(item1, index.getItem(index1));
+        assertSame(item2, index.getItem(index2));
+
+        ScheduledItem moved = plan.moveScheduledItem(item1, 20);
+        assertSame(moved, plan.getScheduledItem(index1));
+
+        SchedulePlan clone = plan.clone();
+        assertSame(index, clone.getItemIndex());
+        clone.shiftAll(5);
+        assertEquals(25, clone.getScheduledItem(index1).getStart());
+        assertEquals(20, plan.getScheduledItem(index1).getStart());
+
+        plan.unschedule(plan.getScheduledItem(index2));
+        assertNull(plan.getScheduledItem(index2));
+        assertEquals(15, clone.getScheduledItem(index2).getStart());
+    }
+
+    @Test
+    public void testStartValues() {
+        plan.add(createItem(3, 5), 12);
+        List<Integer> values = new ArrayList<Integer>();
+        for (int value : plan.getStartValues()) {
+            values.add(value);
+            // changes of the plan do not affect the running iteration
+            plan.moveScheduledItem(item1, 30);
+            plan.moveScheduledItem(item1, 0);
+        }
+        assertEquals(Arrays.asList(0, 10, 12, 15, 17), values);
+        assertEquals(new ArrayList<Integer>(plan.getExistingStartValues()), values);
+
+        plan.shiftAll(5);
+        values.clear();
+        for (int value : plan.getStartValues(0, 16)) {
+            values.add(value);
+        }
+        assertEquals(Arrays.asList(0, 5, 15), values);
+    }
+
+    @Test
+    public void testMakespan() {
+        assertEquals(15, plan.getMakespan());
+        assertEquals(10, plan.getMakespanWithout(item2));
+        assertEquals(15, plan.getMakespanWithout(item1));
+
+        ItemToSchedule item3 = createItem(3, 5);
+        plan.add(item3, 10);
+        assertEquals(15, plan.getMakespanWithout(item2));
+
+        plan.moveScheduledItem(item1, 40);
+        assertEquals(50, plan.getMakespan());
+        assertEquals(15, plan.getMakespanWithout(item1));
+        plan.unschedule(plan.getScheduledItem(item1));
+        assertEquals(15, plan.getMakespan());
+        plan.shiftAll(-10);
+        assertEquals(5, plan.getMakespan());
+        assertEquals(5, plan.getMakespanWithout(item2));
+    }
+
+    @Test
+    public void testClonesAreIndependent() {
+        SchedulePlan clone = plan.clone();
+        ItemToSchedule item3 = createItem(3, 5);
+        clone.add(item3, 20);
+        clone.moveScheduledItem(item1, 30);
+        plan.fixateItem(plan.getScheduledItem(item2));
+
+        assertNull(plan.getScheduledItem(item3));
+        assertEquals(2, plan.getScheduledItems().size());
+        assertEquals(0, plan.getScheduledItem(item1).getStart());
+        assertEquals(15, plan.getMakespan());
+        assertEquals(3, clone.getScheduledItems().size());
+        assertEquals(40, clone.getMakespan());
+        assertTrue(clone.canBeMoved(clone.getScheduledItem(item2)));
+        assertFalse(plan.canBeMoved(plan.getScheduledItem(item2)));
+    }
+
+    @Test
+    public void testFixedItems() {
+        ItemToSchedule item3 = createItem(3, 5);
+        plan.add(item3, 20);
+        plan.unschedule(plan.getScheduledItem(item1));
+        plan.fixateAll(Arrays.asList(plan.getScheduledItem(item3)));
+        assertEquals(Arrays.asList(plan.getScheduledItem(item3)), plan.getFixedItems());
+
+        // the fixed items keep their place when the items are indexed
+        plan.indexItems();
+        assertFalse(plan.canBeMoved(plan.getScheduledItem(item3)));
+        assertTrue(plan.canBeMoved(plan.getScheduledItem(item2)));
+        plan.shiftAll(5);
+        assertEquals(20, plan.getScheduledItem(item3).getStart());
+        assertEquals(15, plan.getScheduledItem(item2).getStart());
+        assertEquals(Arrays.asList(plan.getScheduledItem(item3)), plan.getFixedItems());
+    }
+
+    @Test
+    public void testFixateAllIsAtomic() {
+        ScheduledItem unknownItem = new ScheduledItem(createItem(3, 5), 0);
+        try {
+            plan.fixateAll(Arrays.asList(plan.getScheduledItem(item1), unknownItem));
+            fail();
+        }
+        catch (IllegalArgumentException e) {
+            assertTrue(plan.getFixedItems().isEmpty());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMoveFixedItem() {
+        plan.fixateItem(plan.getScheduledItem(item1));
+        plan.moveScheduledItem(item1, 5);
+    }
+
+    @Test
+    public void testTransaction() {
+        Lane lane = new Lane(0);
+        plan.beginTransaction();
+        assertTrue(plan.isInTransaction());
+        plan.moveTentatively(item1, 20);
+        ScheduledItem moved = plan.moveTentatively(item1, 30);
+        assertSame(moved, plan.getScheduledItem(item1));
+        // the indexes keep the state from the beginning of the transaction
+        assertEquals(15, plan.getMakespan());
+        assertEquals(Arrays.asList(plan.getScheduledItem(item2)), plan.getOverlappingItems(lane, 10, 40));
+        assertEquals(0, plan.getFreeStart(item1, 0));
+        plan.rollback();
+        assertFalse(plan.isInTransaction());
+        assertEquals(0, plan.getScheduledItem(item1).getStart());
+
+        plan.beginTransaction();
+        plan.moveTentatively(item1, 30);
+        plan.moveTentatively(item2, 0);
+        plan.commit();
+        assertEquals(40, plan.getMakespan());
+        assertEquals(Arrays.asList(0, 5, 30, 40), new ArrayList<Integer>(plan.getExistingStartValues()));
+        assertEquals(Arrays.asList(plan.getScheduledItem(item2), plan.getScheduledItem(item1)), plan.getOverlappingItems(lane, 0, 40));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testMoveDuringTransaction() {
+        plan.beginTransaction();
+        plan.moveScheduledItem(item1, 20);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testCommitWithoutTransaction() {
+        plan.commit();
+    }
+
+    @Test
+    public void testDiff() {
+        SchedulePlan newPlan = plan.clone();
+        assertTrue(plan.diff(newPlan).isEmpty());
+
+        ItemToSchedule item3 = createItem(3, 5);
+        newPlan.add(item3, 20);
+        newPlan.moveScheduledItem(item1, 30);
+        newPlan.unschedule(newPlan.getScheduledItem(item2));
+        PlanDiff diff = plan.diff(newPlan);
+        assertEquals(Arrays.asList(newPlan.getScheduledItem(item3)), diff.getAddedItems());
+        assertEquals(Arrays.asList(plan.getScheduledItem(item2)), diff.getRemovedItems());
+        assertEquals(1, diff.getMovedItems().size());
+        assertEquals(0, diff.getMovedItems().get(0).getOldStart());
+        assertEquals(30, diff.getMovedItems().get(0).getNewStart());
+
+        // both plans give the same position to different items
+        ItemToSchedule item4 = createItem(4, 5);
+        plan.add(item4, 40);
+        newPlan.add(item4, 40);
+        diff = newPlan.diff(plan);
+        assertEquals(Arrays.asList(plan.getScheduledItem(item2)), diff.getAddedItems());
+        assertEquals(Arrays.asList(newPlan.getScheduledItem(item3)), diff.getRemovedItems());
+        assertEquals(1, diff.getMovedItems().size());
+        assertSame(plan.getScheduledItem(item1), diff.getMovedItems().get(0).getNewItem());
+    }
+
+    @Test
+    public void testDependentItems() {
+        Map<Lane, Integer> durations = new HashMap<Lane, Integer>();
+        durations.put(new Lane(1), 5);
+        ItemToSchedule item3 = new ItemToSchedule(3, durations, Arrays.asList(item1));
+        ItemToSchedule item4 = new ItemToSchedule(4, durations, Arrays.asList(item1, item2));
+        plan.add(item3, 20);
+        plan.add(item4, 30);
+
+        assertEquals(Arrays.asList(plan.getScheduledItem(item3), plan.getScheduledItem(item4)), pollAll(plan.getDependentItems(item1)));
+        assertEquals(Arrays.asList(plan.getScheduledItem(item4)), pollAll(plan.getDependentItems(item2)));
+
+        plan.indexItems();
+        plan.moveScheduledItem(item3, 40);
+        assertEquals(Arrays.asList(plan.getScheduledItem(item4), plan.getScheduledItem(item3)), pollAll(plan.getDependentItems(item1)));
+        plan.unschedule(plan.getScheduledItem(item4));
+        assertEquals(Arrays.asList(plan.getScheduledItem(item3)), pollAll(plan.getDependentItems(item1)));
+        assertTrue(plan.getDependentItems(item3).isEmpty());
+    }
+
+    private static List<ScheduledItem> pollAll(PriorityQueue<ScheduledItem> queue) {
+        List<ScheduledItem> result = new ArrayList<ScheduledItem>();
+        while (!queue.isEmpty()) {
+            result.add(queue.poll());
+        }
+        return result;
+    }
+
+    @Test
+    public void testLaneQueries() {
+        Lane lane = new Lane(0);
+        assertEquals(Arrays.asList(plan.getScheduledItem(item1)), plan.getOverlappingItems(lane, 5, 10));
+        assertEquals(2, plan.getOverlappingItems(lane, 9, 11).size());
+        assertSame(plan.getScheduledItem(item2), plan.getNextItem(lane, 1));
+        assertNull(plan.getPreviousItem(lane, 0));
+        assertEquals(0, plan.getOverlappingItems(new Lane(1), 0, 100).size());
+
+        SchedulePlan clone = plan.clone();
+        plan.moveScheduledItem(item1, 20);
+        assertEquals(Arrays.asList(plan.getScheduledItem(item2)), plan.getOverlappingItems(lane, 0, 20));
+        assertSame(plan.getScheduledItem(item1), plan.getPreviousItem(lane, 25));
+        assertEquals(Arrays.asList(clone.getScheduledItem(item1)), clone.getOverlappingItems(lane, 0, 10));
+
+        plan.unschedule(plan.getScheduledItem(item1));
+        plan.shiftAll(5);
+        assertEquals(Arrays.asList(plan.getScheduledItem(item2)), plan.getOverlappingItems(lane, 0, 100));
+        assertSame(plan.getScheduledItem(item2), plan.getNextItem(lane, 15));
+    }
+
+    @Test
+    public void testFreeStart() {
+        Map<Lane, Integer> durations = new HashMap<Lane, Integer>();
+        durations.put(new Lane(0), 5);
+        durations.put(new Lane(1), 5);
+        ItemToSchedule item3 = new ItemToSchedule(3, durations, new ArrayList<ItemToSchedule>());
+        plan.add(createItem(4, 5), 30);
+        Map<Lane, Integer> otherDurations = new HashMap<Lane, Integer>();
+        otherDurations.put(new Lane(1), 10);
+        plan.add(new ItemToSchedule(5, otherDurations, new ArrayList<ItemToSchedule>()), 15);
+
+        // the gap on lane 0 between 15 and 30 is blocked on lane 1 until 25
+        assertEquals(25, plan.getFreeStart(item3, 0));
+        assertEquals(35, plan.getFreeStart(item3, 26));
+        // a scheduled item does not block itself
+        assertEquals(0, plan.getFreeStart(item1, 0));
+        assertEquals(11, plan.getFreeStart(item2, 11));
+        assertEquals(35, plan.getFreeStart(item2, 26));
+    }
+
+    @Test
+    public void testAddItemAfterIndexing() {
+        ItemIndex index = plan.indexItems();
+        SchedulePlan clone = plan.clone();
+        Map<Lane, Integer> durations = new HashMap<Lane, Integer>();
+        durations.put(new Lane(0), 5);
+        ItemToSchedule item3 = new ItemToSchedule(3, durations, Arrays.asList(item1));
+        plan.add(item3, 20);
+
+        assertNull(plan.getItemIndex());
+        assertSame(index, clone.getItemIndex());
+        assertNull(clone.getScheduledItem(item3));
+        assertEquals(20, plan.getScheduledItem(item3).getStart());
+        assertEquals(10, plan.getScheduledItem(item2).getStart());
+        assertEquals(Arrays.asList(plan.getScheduledItem(item3)), pollAll(plan.getDependentItems(item1)));
+        assertEquals(25, plan.getMakespan());
+    }
+
+    @Test
+    public void testAddItemToScheduledPlan() {
+        ViolationsManager manager = new ViolationsManager(new ArrayList<SingleItemConstraint>(), new ArrayList<ItemPairConstraint>());
+        SchedulePlan result = new HeuristicRepairScheduling(manager).schedule(Arrays.asList(item1, item2));
+        ItemToSchedule item3 = createItem(3, 5);
+        ScheduledItem added = result.add(item3, 50);
+
+        assertSame(added, result.getScheduledItem(item3));
+        assertEquals(3, result.getScheduledItems().size());
+        assertEquals(55, result.getMakespan());
+        result.moveScheduledItem(item3, 60);
+        assertEquals(60, result.getScheduledItem(item3).getStart());
+    }
+}